@@ -0,0 +1,215 @@
+package circuit;
+
+// Функция активации слоя вместе с ее производной.
+// Производная выражается через выход активации y = f(z), поэтому обратному проходу не нужны значения z:
+// multiplyDerivative делает deltas[i] *= f'(z_i) за один проход по выходам слоя.
+public abstract class Activation {
+
+    public static final Activation SIGMOID = new Sigmoid();
+    public static final Activation FAST_SIGMOID = new FastSigmoid();
+    public static final Activation TANH = new Tanh();
+    public static final Activation RELU = new LeakyRelu(0);
+    // Без нелинейности: линейный выход слоя
+    public static final Activation IDENTITY = new Identity();
+
+    public static Activation leakyRelu(double slope) {
+        return new LeakyRelu(slope);
+    }
+
+    public abstract void apply(double[] values, int length);
+
+    public abstract void multiplyDerivative(double[] outputs, double[] deltas, int length);
+
+    public abstract void apply(float[] values, int length);
+
+    public abstract void multiplyDerivative(float[] outputs, float[] deltas, int length);
+
+    private abstract static class SigmoidDerivative extends Activation {
+        @Override
+        public void multiplyDerivative(double[] outputs, double[] deltas, int length) {
+            for (int i = 0; i < length; i++) {
+                deltas[i] *= outputs[i] * (1 - outputs[i]);
+            }
+        }
+
+        @Override
+        public void multiplyDerivative(float[] outputs, float[] deltas, int length) {
+            for (int i = 0; i < length; i++) {
+                deltas[i] *= outputs[i] * (1 - outputs[i]);
+            }
+        }
+    }
+
+    private static final class Sigmoid extends SigmoidDerivative {
+        private final Kernels kernels = Kernels.get();
+
+        @Override
+        public void apply(double[] values, int length) {
+            kernels.sigmoid(values, length);
+        }
+
+        @Override
+        public void apply(float[] values, int length) {
+            kernels.sigmoid(values, length);
+        }
+
+        @Override
+        public String toString() {
+            return "sigmoid";
+        }
+    }
+
+    // Сигмоида по таблице с линейной интерполяцией на [-16, 16], за пределами - значения на границах.
+    // Шаг таблицы 1/128, погрешность интерполяции не больше h^2/8 * max|f''| < 1e-6,
+    // на отсечении |1 - sigmoid(16)| < 1.2e-7.
+    private static final class FastSigmoid extends SigmoidDerivative {
+        private static final double LIMIT = 16;
+        private static final int STEPS_PER_UNIT = 128;
+        private static final int SIZE = (int) (2 * LIMIT * STEPS_PER_UNIT);
+        private static final double[] TABLE = new double[SIZE + 2];
+        private static final float[] FLOAT_TABLE = new float[SIZE + 2];
+
+        static {
+            for (int i = 0; i <= SIZE; i++) {
+                TABLE[i] = 1 / (1 + Math.exp(-(i / (double) STEPS_PER_UNIT - LIMIT)));
+                FLOAT_TABLE[i] = (float) TABLE[i];
+            }
+            // Лишний элемент, чтобы при x = LIMIT интерполяция не выходила за массив
+            TABLE[SIZE + 1] = TABLE[SIZE];
+            FLOAT_TABLE[SIZE + 1] = FLOAT_TABLE[SIZE];
+        }
+
+        @Override
+        public void apply(double[] values, int length) {
+            for (int i = 0; i < length; i++) {
+                double x = Math.max(-LIMIT, Math.min(LIMIT, values[i]));
+                double position = (x + LIMIT) * STEPS_PER_UNIT;
+                int index = (int) position;
+                double fraction = position - index;
+                values[i] = TABLE[index] + fraction * (TABLE[index + 1] - TABLE[index]);
+            }
+        }
+
+        @Override
+        public void apply(float[] values, int length) {
+            for (int i = 0; i < length; i++) {
+                float x = Math.max((float) -LIMIT, Math.min((float) LIMIT, values[i]));
+                float position = (x + (float) LIMIT) * STEPS_PER_UNIT;
+                int index = (int) position;
+                float fraction = position - index;
+                values[i] = FLOAT_TABLE[index] + fraction * (FLOAT_TABLE[index + 1] - FLOAT_TABLE[index]);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "fast sigmoid";
+        }
+    }
+
+    private static final class Tanh extends Activation {
+        @Override
+        public void apply(double[] values, int length) {
+            for (int i = 0; i < length; i++) {
+                values[i] = Math.tanh(values[i]);
+            }
+        }
+
+        @Override
+        public void multiplyDerivative(double[] outputs, double[] deltas, int length) {
+            for (int i = 0; i < length; i++) {
+                deltas[i] *= 1 - outputs[i] * outputs[i];
+            }
+        }
+
+        @Override
+        public void apply(float[] values, int length) {
+            for (int i = 0; i < length; i++) {
+                values[i] = (float) Math.tanh(values[i]);
+            }
+        }
+
+        @Override
+        public void multiplyDerivative(float[] outputs, float[] deltas, int length) {
+            for (int i = 0; i < length; i++) {
+                deltas[i] *= 1 - outputs[i] * outputs[i];
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "tanh";
+        }
+    }
+
+    // ReLU при slope = 0, иначе LeakyReLU: f(z) = z при z > 0, slope * z иначе.
+    // При slope >= 0 знак выхода совпадает со знаком z, поэтому производная определяется по выходу.
+    private static final class LeakyRelu extends Activation {
+        private final double slope;
+
+        LeakyRelu(double slope) {
+            if (slope < 0) {
+                throw new IllegalArgumentException("Slope must not be negative");
+            }
+            this.slope = slope;
+        }
+
+        @Override
+        public void apply(double[] values, int length) {
+            for (int i = 0; i < length; i++) {
+                values[i] = values[i] > 0 ? values[i] : slope * values[i];
+            }
+        }
+
+        @Override
+        public void multiplyDerivative(double[] outputs, double[] deltas, int length) {
+            for (int i = 0; i < length; i++) {
+                deltas[i] *= outputs[i] > 0 ? 1 : slope;
+            }
+        }
+
+        @Override
+        public void apply(float[] values, int length) {
+            float s = (float) slope;
+            for (int i = 0; i < length; i++) {
+                values[i] = values[i] > 0 ? values[i] : s * values[i];
+            }
+        }
+
+        @Override
+        public void multiplyDerivative(float[] outputs, float[] deltas, int length) {
+            float s = (float) slope;
+            for (int i = 0; i < length; i++) {
+                deltas[i] *= outputs[i] > 0 ? 1 : s;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return slope == 0 ? "relu" : "leaky relu " + slope;
+        }
+    }
+
+    private static final class Identity extends Activation {
+        @Override
+        public void apply(double[] values, int length) {
+        }
+
+        @Override
+        public void multiplyDerivative(double[] outputs, double[] deltas, int length) {
+        }
+
+        @Override
+        public void apply(float[] values, int length) {
+        }
+
+        @Override
+        public void multiplyDerivative(float[] outputs, float[] deltas, int length) {
+        }
+
+        @Override
+        public String toString() {
+            return "identity";
+        }
+    }
+}
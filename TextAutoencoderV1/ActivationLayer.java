@@ -0,0 +1,51 @@
+package circuit;
+
+// Поэлементная функция активации. Производная считается по выходу, см. Activation.
+public class ActivationLayer implements Layer {
+    private final int size;
+    private final Activation activation;
+
+    public ActivationLayer(int size, Activation activation) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Layer size must be positive");
+        }
+        this.size = size;
+        this.activation = activation;
+    }
+
+    public Activation activation() {
+        return activation;
+    }
+
+    @Override
+    public int inputSize() {
+        return size;
+    }
+
+    @Override
+    public int outputSize() {
+        return size;
+    }
+
+    @Override
+    public void forward(double[] params, int offset, double[] input, double[] output, int batchSize,
+                        boolean training, Workspace workspace, int index) {
+        System.arraycopy(input, 0, output, 0, batchSize * size);
+        activation.apply(output, batchSize * size);
+    }
+
+    @Override
+    public void backward(double[] params, int offset, double[] input, double[] output, double[] deltaOut,
+                         double[] deltaIn, int batchSize, double[] gradient, Workspace workspace, int index) {
+        if (deltaIn == null) {
+            return;
+        }
+        System.arraycopy(deltaOut, 0, deltaIn, 0, batchSize * size);
+        activation.multiplyDerivative(output, deltaIn, batchSize * size);
+    }
+
+    @Override
+    public String toString() {
+        return activation.toString();
+    }
+}
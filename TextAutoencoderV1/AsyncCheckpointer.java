@@ -0,0 +1,155 @@
+package circuit;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Фоновое сохранение весов во время обучения.
+// Поток обучения только копирует веса в один из двух буферов, запись идет в отдельном потоке
+// через ModelCheckpoint.write (временный файл, fsync, атомарное переименование), так что падение посреди записи
+// не портит уже сохраненные чекпоинты. Хранятся последние keepLast файлов checkpoint-<step>.bin.
+// Вместе с весами в чекпоинт попадает состояние оптимизатора сети (номер шага и моменты).
+public class AsyncCheckpointer implements AutoCloseable {
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".bin";
+
+    private final SimpleNeuralNetwork network;
+    private final Path directory;
+    private final int keepLast;
+    private final ExecutorService writer;
+    private final double[][] buffers = new double[2][];
+    private final double[][][] stateBuffers = new double[2][][];
+    private final Future<?>[] pendingWrites = new Future<?>[2];
+    private int nextBuffer;
+
+    public AsyncCheckpointer(SimpleNeuralNetwork network, Path directory, int keepLast) throws IOException {
+        if (keepLast < 1) {
+            throw new IllegalArgumentException("Must keep at least one checkpoint");
+        }
+        this.network = network;
+        this.directory = directory;
+        this.keepLast = keepLast;
+        Files.createDirectories(directory);
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Снимок текущих весов; блокирует вызывающего, только если буфер еще пишется с позапрошлого раза
+    public void checkpoint(long step) {
+        int index = nextBuffer;
+        nextBuffer ^= 1;
+        awaitWrite(index);
+        if (buffers[index] == null) {
+            buffers[index] = new double[network.parameterCount()];
+        }
+        double[] snapshot = buffers[index];
+        network.copyWeightsTo(snapshot);
+
+        Optimizer optimizer = network.getOptimizer();
+        double[][] state = optimizer.state;
+        if (stateBuffers[index] == null || stateBuffers[index].length != state.length) {
+            stateBuffers[index] = new double[state.length][network.parameterCount()];
+        }
+        double[][] stateSnapshot = stateBuffers[index];
+        for (int i = 0; i < state.length; i++) {
+            System.arraycopy(state[i], 0, stateSnapshot[i], 0, state[i].length);
+        }
+        String optimizerName = optimizer.name();
+        long optimizerStep = optimizer.getStep();
+        pendingWrites[index] = writer.submit(() -> write(step, snapshot, optimizerName, optimizerStep,
+                stateSnapshot));
+    }
+
+    public static Path latest(Path directory) throws IOException {
+        List<Path> checkpoints = list(directory);
+        return checkpoints.isEmpty() ? null : checkpoints.get(checkpoints.size() - 1);
+    }
+
+    // Шаг последнего чекпоинта или 0, если их нет; с него продолжается нумерация после перезапуска
+    public static long latestStep(Path directory) throws IOException {
+        Path latest = latest(directory);
+        if (latest == null) {
+            return 0;
+        }
+        String name = latest.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private void write(long step, double[] snapshot, String optimizerName, long optimizerStep, double[][] state) {
+        Path target = directory.resolve(String.format("%s%012d%s", PREFIX, step, SUFFIX));
+        try {
+            ModelCheckpoint.write(target, network.getInputSize(), network.getLayerSizes(), snapshot, optimizerName,
+                    optimizerStep, state);
+
+            List<Path> checkpoints = list(directory);
+            for (int i = 0; i < checkpoints.size() - keepLast; i++) {
+                Files.deleteIfExists(checkpoints.get(i));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Чекпоинты по возрастанию шага (номер дополнен нулями, поэтому достаточно сортировки по имени)
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> checkpoints = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return checkpoints;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                checkpoints.add(path);
+            }
+        }
+        Collections.sort(checkpoints);
+        return checkpoints;
+    }
+
+    // Буфер можно перезаписывать только после того, как поток записи его отпустил, иначе в файл попадет
+    // смесь двух снимков. Прерывание не отменяет ожидание, а восстанавливается после него.
+    private void awaitWrite(int index) {
+        Future<?> pending = pendingWrites[index];
+        if (pending == null) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                pending.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+                break;
+            }
+        }
+        pendingWrites[index] = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Дожидается записи всех отправленных чекпоинтов
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
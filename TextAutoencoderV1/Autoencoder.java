@@ -0,0 +1,286 @@
+package circuit;
+
+import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.swing.JFrame;
+
+public class  Autoencoder {
+
+    private static final Path CHECKPOINT_DIRECTORY = Paths.get("checkpoints");
+	
+	// Определение класса ErrorPlotter
+    // Хранит не больше POINTS точек: старые усредняются попарно, см. MetricSeries
+    public static class ErrorPlotter extends JFrame implements MetricsSink {
+        private static final int POINTS = 1024;
+        private final MetricSeries errors = new MetricSeries(POINTS, true);
+        private long step;
+
+        public ErrorPlotter() {
+            super("Error Plot");
+            setSize(800, 600);
+            setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        }
+
+        public void addError(double error) {
+            errors.add("test_error", step++, error);
+            repaint();
+        }
+
+        @Override
+        public void record(long step, Map<String, Double> values) {
+            Double error = values.get("test_error");
+            if (error != null && !error.isNaN()) {
+                this.step = step;
+                addError(error);
+            }
+        }
+
+        @Override
+        public void paint(Graphics g) {
+            // Используем двойную буферизацию для устранения мерцания
+            Image offscreenImage = createImage(getWidth(), getHeight());
+            Graphics offscreenGraphics = offscreenImage.getGraphics();
+            paintOffscreen(offscreenGraphics);
+            g.drawImage(offscreenImage, 0, 0, this);
+        }
+
+        private void paintOffscreen(Graphics g) {
+            super.paint(g);
+            double[] errors = this.errors.values("test_error");
+            if (errors.length == 0) return;
+
+            int width = getWidth();
+            int height = getHeight();
+            int padding = 50;
+            int maxErrorPlotHeight = height - 2 * padding;
+            double maxError = Arrays.stream(errors).max().orElse(1.0);
+
+            // Рисуем оси
+            g.drawLine(padding, padding, padding, height - padding);
+            g.drawLine(padding, height - padding, width - padding, height - padding);
+
+            // Рисуем числовые обозначения ошибки
+            for (int i = 0; i <= 10; i++) {
+                int y = height - padding - (i * maxErrorPlotHeight / 10);
+                g.drawString(String.format("%.2f", maxError * i / 10), 5, y);
+            }
+
+            // Рисуем ломаную линию
+            int prevX = padding, prevY = height - padding;
+            int x, y;
+            for (int i = 0; i < errors.length; i++) {
+                x = padding + i * (width - 2 * padding) / errors.length;
+                y = (int) ((height - padding) - (errors[i] / maxError) * maxErrorPlotHeight);
+                if (i > 0) {
+                    g.drawLine(prevX, prevY, x, y);
+                }
+                prevX = x;
+                prevY = y;
+            }
+        }
+    }
+
+    public static double[] stringToDoubleArray(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        double[] bitArray = new double[bytes.length * 8];
+        for (int i = 0; i < bytes.length; i++) {
+            for (int j = 0; j < 8; j++) {
+                bitArray[i * 8 + j] = (bytes[i] >> (7 - j)) & 1;
+            }
+        }
+        return bitArray;
+    }
+    public static double[][] stringToBitArray(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int bitsLength = bytes.length * 8;
+        int arraySize = (int) Math.ceil((double) bitsLength / 256);
+        double[][] bitArrays = new double[arraySize][256];
+
+        for (int i = 0; i < bytes.length; i++) {
+            for (int j = 0; j < 8; j++) {
+                int bitIndex = i * 8 + j;
+                bitArrays[bitIndex / 256][bitIndex % 256] = (bytes[i] >> (7 - j)) & 1;
+            }
+        }
+
+        return bitArrays;
+    }
+
+    // Те же окна по 256 бит, что и stringToBitArray, но упакованные: по 32 байта UTF-8 на окно
+    public static byte[][] stringToPackedBits(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        byte[][] windows = new byte[(bytes.length + 31) / 32][32];
+        for (int i = 0; i < windows.length; i++) {
+            System.arraycopy(bytes, i * 32, windows[i], 0, Math.min(32, bytes.length - i * 32));
+        }
+        return windows;
+    }
+
+    public static String bitArrayToString(double[][] bitArrays) {
+        int bitsLength = bitArrays.length * 256;
+        byte[] bytes = new byte[bitsLength / 8];
+
+        for (int i = 0; i < bitsLength; i++) {
+            if (bitArrays[i / 256][i % 256] >= 0.5) {
+                bytes[i / 8] |= 1 << (7 - (i % 8));
+            }
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8).trim();
+    }
+    public static String doubleArrayToString(double[] bitArray) {
+        if (bitArray.length % 8 != 0) {
+            throw new IllegalArgumentException("Invalid bit array length");
+        }
+        byte[] bytes = new byte[bitArray.length / 8];
+        for (int i = 0; i < bytes.length; i++) {
+            for (int j = 0; j < 8; j++) {
+                bytes[i] |= (bitArray[i * 8 + j] >= 0.5 ? 1 : 0) << (7 - j);
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // Раньше сеть создавалась и веса читались с диска на каждый вызов; теперь используется готовый снимок
+    public static double[] outputFromLatentVector(InferenceModel model, double[] latentVector) {
+        return model.predictFromLatentVector(latentVector);
+    }
+
+    // Весь текст окнами по 256 бит через конвейер: окна идут потоком, а не по одному
+    public static String reconstruct(PipelinedInference pipeline, String text) {
+        return bitArrayToString(pipeline.predictAll(stringToBitArray(text)));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        // Без дисплея (или с -Dsnn.headless=true) окно не создается, метрики идут только в файл
+        boolean headless = GraphicsEnvironment.isHeadless() || Boolean.getBoolean("snn.headless");
+        ErrorPlotter plotter = null;
+        if (!headless) {
+            plotter = new ErrorPlotter();
+            plotter.setVisible(true);
+        }
+
+
+         int inputSize = 256;
+         int[] layerSizes = new int[]{200, inputSize};
+         
+         SimpleNeuralNetwork network = new SimpleNeuralNetwork(inputSize, layerSizes, CHECKPOINT_DIRECTORY);
+         AsyncCheckpointer checkpointer = new AsyncCheckpointer(network, CHECKPOINT_DIRECTORY, 5);
+          	  // 4. Задаем количество эпох и скорость обучения.
+        int epochs = 10000000;
+        // Adam сходится к той же ошибке на порядок быстрее SGD; его шаг не зависит от размера батча
+        int batchSize = 32;
+        double learningRate = 0.01;
+        network.setOptimizer(Optimizer.adam());
+        
+        // Обучающий корпус читается потоково из отображенного в память файла
+        String filePath = "dataset.txt";
+        DatasetSource dataset = new DatasetSource(Paths.get(filePath));
+        int shuffleBuffer = 4096;
+        int prefetch = 4;
+
+        String testFilePath = "test_dataset.txt";
+        String testText = Files.readString(Paths.get(testFilePath), StandardCharsets.UTF_8);
+        double[][] testBitArrays = stringToBitArray(testText);
+        // Тест оценивается параллельно по снимку весов; обучение останавливается, если ошибка
+        // не улучшается на 1e-5 за patience оценок подряд
+        int evaluationInterval = 1;
+        int patience = 50;
+        Evaluator evaluator = new Evaluator(testBitArrays, testBitArrays)
+                .setInterval(evaluationInterval)
+                .setEarlyStopping(patience, 1e-5);
+
+        // Запуск воспроизводим при одинаковых -Dsnn.seed и -Dsnn.threads: веса новой сети, перемешивание
+        // и маски dropout зависят только от зерна, а сумма градиентов - от числа частей батча, но не от потоков
+        int threads = Integer.getInteger("snn.threads", Runtime.getRuntime().availableProcessors());
+        ParallelTrainer trainer = new ParallelTrainer(network, threads, ParallelTrainer.Mode.DATA_PARALLEL);
+        TrainingMetrics metrics = new TrainingMetrics(network);
+        FileMetricsSink metricsFile = new FileMetricsSink(Paths.get("metrics.csv"));
+        metrics.addSink(metricsFile);
+        if (plotter != null) {
+            metrics.addSink(plotter);
+        }
+        trainer.setMetrics(metrics);
+
+        int startEpoch = (int) AsyncCheckpointer.latestStep(CHECKPOINT_DIRECTORY);
+        for (int epoch = startEpoch; epoch < epochs; epoch++) {
+            // Окна остаются упакованными: первый слой считается только по единичным битам
+            try (DatasetSource.BatchStream batches = dataset.packedBatches(batchSize, shuffleBuffer, prefetch,
+                    network.getSeed() + epoch)) {
+                while (true) {
+                    long waitStart = System.nanoTime();
+                    byte[][] batch = batches.nextPacked();
+                    metrics.addPhase(TrainingMetrics.Phase.IO, System.nanoTime() - waitStart);
+                    if (batch == null) {
+                        break;
+                    }
+                    // Автоэнкодер: цель совпадает со входом
+                    trainer.trainBatchBits(batch, learningRate);
+                }
+            }
+
+            // После обучения всех примеров, можно вычислить ошибку на тестовом наборе
+            if (!evaluator.isDue(epoch)) {
+                metrics.report(epoch);
+                continue;
+            }
+            InferenceModel model = new InferenceModel(network);
+            double testAverageError = evaluator.evaluate(epoch, model);
+            metrics.report(epoch, testAverageError);
+            // Для наглядности печатается восстановленный текст только первого куска теста
+            System.out.println(doubleArrayToString(model.predict(testBitArrays[0])));
+            System.out.println("Epoch " + epoch + ": Test Average Error = " + testAverageError);
+            
+            boolean stop = evaluator.shouldStop();
+            if (stop) {
+                // Последние patience оценок не улучшили ошибку: сеть возвращается к лучшему снимку,
+                // и в последний чекпоинт (номер - текущая эпоха, чтобы продолжение шло с нее) попадает он.
+                // Состояние оптимизатора остается текущим
+                InferenceModel best = evaluator.getBestModel();
+                network.copyWeightsFrom(best.parameters());
+                System.out.println("Early stopping at epoch " + epoch + ": best Test Average Error = "
+                        + evaluator.getBestError() + " at epoch " + evaluator.getBestStep()
+                        + ", its weights are saved as checkpoint " + (epoch + 1));
+            }
+            if ((epoch + 1) % 100 == 0 || stop) {
+                checkpointer.checkpoint(epoch + 1);
+               // System.out.println("Weights saved at epoch " + (epoch + 1));
+            }
+            if (stop) {
+                break;
+            }
+        
+    }
+        // Веса больше не меняются: весь тест восстанавливается через кэш, повторяющиеся куски кодируются один раз
+        LatentCache latentCache = new LatentCache(network, 64L * 1024 * 1024);
+        InferenceModel finalModel = new InferenceModel(network);
+        double[][] reconstructed = new double[testBitArrays.length][];
+        for (int i = 0; i < testBitArrays.length; i++) {
+            reconstructed[i] = outputFromLatentVector(finalModel, latentCache.encode(testBitArrays[i]));
+        }
+        System.out.println(bitArrayToString(reconstructed));
+        System.out.println("Test chunks: " + testBitArrays.length + ", encoded: " + latentCache.misses()
+                + ", from cache: " + latentCache.hits());
+        evaluator.close();
+        trainer.close();
+        checkpointer.close();
+        dataset.close();
+        metricsFile.close();
+        
+    }
+
+     
+
+  
+    
+}
@@ -0,0 +1,217 @@
+package circuit;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Потоковый источник обучающих примеров для автоэнкодера.
+// Файл отображается в память (окнами до 1 ГБ), окна по WINDOW_BYTES байт декодируются в биты
+// только при выдаче (или выдаются упакованными, см. packedBatches) - как stringToBitArray, но без загрузки
+// всего корпуса в кучу, поэтому корпус может быть больше оперативной памяти. Последнее окно дополняется нулями.
+public class DatasetSource implements AutoCloseable {
+    public static final int WINDOW_BYTES = 32;
+    public static final int WINDOW_BITS = WINDOW_BYTES * 8;
+
+    private static final long REGION_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final MappedByteBuffer[] regions;
+
+    public DatasetSource(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.regions = new MappedByteBuffer[(int) ((fileSize + REGION_BYTES - 1) / REGION_BYTES)];
+    }
+
+    public long size() {
+        return (fileSize + WINDOW_BYTES - 1) / WINDOW_BYTES;
+    }
+
+    // Копирует байты окна index в bytes (WINDOW_BYTES элементов)
+    public void readWindow(long index, byte[] bytes) throws IOException {
+        long position = index * WINDOW_BYTES;
+        // REGION_BYTES кратен WINDOW_BYTES, так что окно не пересекает границу отображения
+        MappedByteBuffer region = region(position);
+        int start = (int) (position % REGION_BYTES);
+        int available = (int) Math.min(WINDOW_BYTES, fileSize - position);
+        for (int i = 0; i < WINDOW_BYTES; i++) {
+            bytes[i] = i < available ? region.get(start + i) : 0;
+        }
+    }
+
+    public void decode(long index, double[] bits) throws IOException {
+        byte[] bytes = new byte[WINDOW_BYTES];
+        readWindow(index, bytes);
+        decode(bytes, bits);
+    }
+
+    public static void decode(byte[] bytes, double[] bits) {
+        for (int i = 0; i < WINDOW_BYTES; i++) {
+            for (int j = 0; j < 8; j++) {
+                bits[i * 8 + j] = (bytes[i] >> (7 - j)) & 1;
+            }
+        }
+    }
+
+    private synchronized MappedByteBuffer region(long position) throws IOException {
+        int index = (int) (position / REGION_BYTES);
+        MappedByteBuffer region = regions[index];
+        if (region == null) {
+            long start = index * REGION_BYTES;
+            region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_BYTES, fileSize - start));
+            regions[index] = region;
+        }
+        return region;
+    }
+
+    // Одна эпоха мини-батчей. shuffleBuffer > 1 включает перемешивание через буфер такого размера:
+    // каждый следующий пример выбирается случайно из буфера и заменяется очередным окном файла.
+    // Батчи готовит фоновый поток, держа наготове до prefetch батчей.
+    public BatchStream batches(int batchSize, int shuffleBuffer, int prefetch, long seed) {
+        return new BatchStream(batchSize, shuffleBuffer, prefetch, seed, false);
+    }
+
+    // То же, но окна не распаковываются: батч - WINDOW_BYTES байт на пример, читается через nextPacked()
+    // и обучается через trainBatchBits, где нулевые биты не стоят операций
+    public BatchStream packedBatches(int batchSize, int shuffleBuffer, int prefetch, long seed) {
+        return new BatchStream(batchSize, shuffleBuffer, prefetch, seed, true);
+    }
+
+    public class BatchStream implements AutoCloseable {
+        private final int batchSize;
+        private final boolean packed;
+        // Батчи - double[][] или byte[][], в зависимости от packed
+        private final BlockingQueue<Object[]> ready;
+        private final BlockingQueue<Object[]> free;
+        private final Thread producer;
+        private volatile Throwable failure;
+        private Object[] current;
+        private boolean finished;
+
+        // Пустой массив - признак конца эпохи
+        private final Object[] endOfEpoch = new Object[0];
+
+        BatchStream(int batchSize, int shuffleBuffer, int prefetch, long seed, boolean packed) {
+            if (batchSize < 1 || shuffleBuffer < 1 || prefetch < 1) {
+                throw new IllegalArgumentException("Batch size, shuffle buffer and prefetch must be positive");
+            }
+            this.batchSize = batchSize;
+            this.packed = packed;
+            this.ready = new ArrayBlockingQueue<>(prefetch + 1);
+            // prefetch батчей в очереди, один у потребителя и один в заполнении
+            this.free = new ArrayBlockingQueue<>(prefetch + 2);
+            for (int i = 0; i < prefetch + 2; i++) {
+                free.add(packed ? new byte[batchSize][WINDOW_BYTES] : new double[batchSize][WINDOW_BITS]);
+            }
+            this.producer = new Thread(() -> produce(shuffleBuffer, new Random(seed)), "dataset-prefetch");
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        // Следующий батч или null в конце эпохи. Массив действителен до следующего вызова next().
+        public double[][] next() throws IOException {
+            if (packed) {
+                throw new IllegalStateException("Packed stream, use nextPacked()");
+            }
+            return (double[][]) take();
+        }
+
+        public byte[][] nextPacked() throws IOException {
+            if (!packed) {
+                throw new IllegalStateException("Unpacked stream, use next()");
+            }
+            return (byte[][]) take();
+        }
+
+        private Object[] take() throws IOException {
+            if (current != null && current.length == batchSize) {
+                free.add(current);
+            }
+            current = null;
+            if (finished) {
+                return null;
+            }
+            try {
+                Object[] batch = ready.take();
+                if (batch == endOfEpoch) {
+                    finished = true;
+                    if (failure != null) {
+                        throw new IOException("Failed to read dataset", failure);
+                    }
+                    return null;
+                }
+                current = batch;
+                return batch;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a batch", e);
+            }
+        }
+
+        private void produce(int shuffleBuffer, Random random) {
+            try {
+                long count = size();
+                long nextWindow = 0;
+                byte[][] buffer = new byte[(int) Math.min(shuffleBuffer, Math.max(count, 1))][WINDOW_BYTES];
+                int buffered = 0;
+                while (buffered < buffer.length && nextWindow < count) {
+                    readWindow(nextWindow++, buffer[buffered++]);
+                }
+
+                Object[] batch = free.take();
+                int filled = 0;
+                while (buffered > 0) {
+                    int slot = random.nextInt(buffered);
+                    if (packed) {
+                        System.arraycopy(buffer[slot], 0, batch[filled++], 0, WINDOW_BYTES);
+                    } else {
+                        decode(buffer[slot], (double[]) batch[filled++]);
+                    }
+                    if (nextWindow < count) {
+                        readWindow(nextWindow++, buffer[slot]);
+                    } else {
+                        byte[] swap = buffer[slot];
+                        buffer[slot] = buffer[--buffered];
+                        buffer[buffered] = swap;
+                    }
+
+                    if (filled == batchSize) {
+                        ready.put(batch);
+                        batch = free.take();
+                        filled = 0;
+                    }
+                }
+                if (filled > 0) {
+                    // Копия сохраняет тип массива батча
+                    ready.put(Arrays.copyOf(batch, filled));
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable e) {
+                failure = e;
+            }
+            try {
+                ready.put(endOfEpoch);
+            } catch (InterruptedException e) {
+                // Потребитель закрыл поток раньше конца эпохи
+            }
+        }
+
+        @Override
+        public void close() {
+            producer.interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
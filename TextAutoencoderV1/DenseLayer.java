@@ -0,0 +1,89 @@
+package circuit;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Полносвязный слой: output = input * W + b. Параметры - row-major матрица W [inputSize][outputSize],
+// за ней вектор смещений b. Смещения инициализируются нулями.
+public class DenseLayer implements Layer {
+    private final int rows;
+    private final int cols;
+    private final Kernels kernels = Kernels.get();
+
+    public DenseLayer(int inputSize, int outputSize) {
+        if (inputSize < 1 || outputSize < 1) {
+            throw new IllegalArgumentException("Layer sizes must be positive");
+        }
+        this.rows = inputSize;
+        this.cols = outputSize;
+    }
+
+    @Override
+    public int inputSize() {
+        return rows;
+    }
+
+    @Override
+    public int outputSize() {
+        return cols;
+    }
+
+    @Override
+    public int parameterCount() {
+        return rows * cols + cols;
+    }
+
+    @Override
+    public void initialize(double[] params, int offset, Random random) {
+        for (int i = offset; i < offset + rows * cols; i++) {
+            params[i] = random.nextDouble() * 2 - 1;
+        }
+        Arrays.fill(params, offset + rows * cols, offset + parameterCount(), 0);
+    }
+
+    @Override
+    public void forward(double[] params, int offset, double[] input, double[] output, int batchSize,
+                        boolean training, Workspace workspace, int index) {
+        if (batchSize == 1) {
+            kernels.multiply(input, params, offset, rows, cols, output);
+        } else {
+            MatrixKernels.multiply(input, batchSize, rows, params, offset, cols, output);
+        }
+        int biasOffset = offset + rows * cols;
+        for (int s = 0; s < batchSize; s++) {
+            kernels.axpy(1, params, biasOffset, output, s * cols, cols);
+        }
+    }
+
+    @Override
+    public void backward(double[] params, int offset, double[] input, double[] output, double[] deltaOut,
+                         double[] deltaIn, int batchSize, double[] gradient, Workspace workspace, int index) {
+        if (gradient != null) {
+            MatrixKernels.accumulateTransposed(input, batchSize, rows, deltaOut, cols, gradient, offset);
+            int biasOffset = offset + rows * cols;
+            for (int s = 0; s < batchSize; s++) {
+                kernels.axpy(1, deltaOut, s * cols, gradient, biasOffset, cols);
+            }
+        }
+        if (deltaIn == null) {
+            return;
+        }
+        if (batchSize == 1) {
+            kernels.multiplyTransposed(deltaOut, params, offset, rows, cols, deltaIn);
+        } else {
+            MatrixKernels.multiplyTransposed(deltaOut, batchSize, cols, params, offset, rows, deltaIn);
+        }
+    }
+
+    @Override
+    public void update(double[] params, int offset, double[] input, double[] deltaOut, Optimizer optimizer,
+                       double learningRate) {
+        optimizer.updateOuterProduct(params, offset, input, rows, deltaOut, cols, learningRate);
+        optimizer.update(params, offset + rows * cols, 1, deltaOut, 0, cols, learningRate);
+    }
+
+    @Override
+    public String toString() {
+        return "dense " + rows + " -> " + cols;
+    }
+}
@@ -0,0 +1,74 @@
+package circuit;
+
+// Inverted dropout: при обучении каждый выход обнуляется с вероятностью rate, остальные делятся на 1 - rate,
+// поэтому при инференсе слой просто копирует вход. Маска текущего прохода хранится в Workspace.
+public class DropoutLayer implements Layer {
+    private final int size;
+    private final double rate;
+
+    public DropoutLayer(int size, double rate) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Layer size must be positive");
+        }
+        if (rate < 0 || rate >= 1) {
+            throw new IllegalArgumentException("Dropout rate must be in [0, 1)");
+        }
+        this.size = size;
+        this.rate = rate;
+    }
+
+    public double rate() {
+        return rate;
+    }
+
+    @Override
+    public int inputSize() {
+        return size;
+    }
+
+    @Override
+    public int outputSize() {
+        return size;
+    }
+
+    @Override
+    public void forward(double[] params, int offset, double[] input, double[] output, int batchSize,
+                        boolean training, Workspace workspace, int index) {
+        int length = batchSize * size;
+        if (!training || rate == 0) {
+            System.arraycopy(input, 0, output, 0, length);
+            return;
+        }
+        double[] mask = workspace.scratch(index, length);
+        double keep = 1 / (1 - rate);
+        for (int s = 0, i = 0; s < batchSize; s++) {
+            workspace.startRandomStream(s, index);
+            for (int end = i + size; i < end; i++) {
+                mask[i] = workspace.nextRandom() < rate ? 0 : keep;
+                output[i] = input[i] * mask[i];
+            }
+        }
+    }
+
+    @Override
+    public void backward(double[] params, int offset, double[] input, double[] output, double[] deltaOut,
+                         double[] deltaIn, int batchSize, double[] gradient, Workspace workspace, int index) {
+        if (deltaIn == null) {
+            return;
+        }
+        int length = batchSize * size;
+        if (rate == 0) {
+            System.arraycopy(deltaOut, 0, deltaIn, 0, length);
+            return;
+        }
+        double[] mask = workspace.scratch(index, length);
+        for (int i = 0; i < length; i++) {
+            deltaIn[i] = deltaOut[i] * mask[i];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "dropout " + rate;
+    }
+}
@@ -0,0 +1,213 @@
+package circuit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Оценка сети на тестовом наборе по неизменяемому снимку весов (InferenceModel), параллельно на своем ForkJoinPool.
+// Примеры делятся на parallelism частей, частичные суммы складываются в фиксированном порядке,
+// поэтому ошибка не зависит от планирования потоков. Ошибка - средний по примерам MSE, как в Autoencoder.
+// Оценка выполняется раз в interval шагов и, если задан sampleSize, по случайной подвыборке,
+// которая выбирается заново при каждой оценке. Ранняя остановка: если patience оценок подряд ошибка
+// не стала меньше лучшей хотя бы на minDelta, shouldStop() возвращает true.
+public class Evaluator implements AutoCloseable {
+    // Примеры одной части прогоняются через predictBatch кусками такого размера
+    private static final int CHUNK = 64;
+
+    private final double[][] inputs;
+    private final double[][] targets;
+    private final int parallelism;
+    private final ForkJoinPool pool;
+    private final double[] partialErrors;
+    // Перестановка индексов; при подвыборке первые sampleSize элементов - текущая подвыборка
+    private final int[] order;
+
+    private int interval = 1;
+    private int sampleSize;
+    private Random sampleRandom;
+    private int patience;
+    private double minDelta;
+
+    private double bestError = Double.POSITIVE_INFINITY;
+    private long bestStep = -1;
+    private InferenceModel bestModel;
+    private int evaluationsWithoutImprovement;
+
+    public Evaluator(double[][] inputs, double[][] targets) {
+        this(inputs, targets, Runtime.getRuntime().availableProcessors());
+    }
+
+    public Evaluator(double[][] inputs, double[][] targets, int parallelism) {
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException("Number of inputs must match number of target outputs");
+        }
+        if (inputs.length == 0) {
+            throw new IllegalArgumentException("Test set must not be empty");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.inputs = inputs;
+        this.targets = targets;
+        this.parallelism = parallelism;
+        this.pool = new ForkJoinPool(parallelism);
+        this.partialErrors = new double[parallelism];
+        this.order = new int[inputs.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+    }
+
+    // Оценивать только шаги, кратные interval
+    public Evaluator setInterval(int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Evaluation interval must be positive");
+        }
+        this.interval = interval;
+        return this;
+    }
+
+    // 0 - весь набор
+    public Evaluator setSampleSize(int sampleSize, long seed) {
+        if (sampleSize < 0) {
+            throw new IllegalArgumentException("Sample size must not be negative");
+        }
+        this.sampleSize = Math.min(sampleSize, inputs.length);
+        this.sampleRandom = new Random(seed);
+        return this;
+    }
+
+    // patience = 0 отключает раннюю остановку
+    public Evaluator setEarlyStopping(int patience, double minDelta) {
+        if (patience < 0 || minDelta < 0) {
+            throw new IllegalArgumentException("Patience and minimal improvement must not be negative");
+        }
+        this.patience = patience;
+        this.minDelta = minDelta;
+        return this;
+    }
+
+    public boolean isDue(long step) {
+        return step % interval == 0;
+    }
+
+    // Снимает снимок сети и оценивает его, если шаг выпадает на interval; иначе NaN
+    public double evaluate(long step, SimpleNeuralNetwork network) {
+        if (!isDue(step)) {
+            return Double.NaN;
+        }
+        return evaluate(step, new InferenceModel(network));
+    }
+
+    // Оценка снимка на шаге step с учетом в ранней остановке; interval здесь не проверяется
+    public synchronized double evaluate(long step, InferenceModel model) {
+        double error = score(model);
+        if (error < bestError - minDelta) {
+            evaluationsWithoutImprovement = 0;
+        } else {
+            evaluationsWithoutImprovement++;
+        }
+        if (error < bestError) {
+            bestError = error;
+            bestStep = step;
+            bestModel = model;
+        }
+        return error;
+    }
+
+    // Средняя ошибка снимка на наборе или подвыборке, без учета в ранней остановке
+    public synchronized double score(InferenceModel model) {
+        if (model.getInputSize() != inputs[0].length || model.getOutputSize() != targets[0].length) {
+            throw new IllegalArgumentException("Model does not match the test set");
+        }
+        int count = sampleSize == 0 ? inputs.length : sampleSize;
+        if (sampleSize != 0) {
+            // Частичное перемешивание Фишера-Йетса: первые count индексов - новая подвыборка
+            for (int i = 0; i < count; i++) {
+                int j = i + sampleRandom.nextInt(order.length - i);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(parallelism);
+        for (int p = 0; p < parallelism; p++) {
+            final int part = p;
+            final int from = (int) ((long) count * p / parallelism);
+            final int to = (int) ((long) count * (p + 1) / parallelism);
+            tasks.add(() -> {
+                partialErrors[part] = scoreRange(model, from, to);
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Evaluation interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Evaluation task failed", e.getCause());
+            }
+        }
+
+        double total = 0;
+        for (double partial : partialErrors) {
+            total += partial;
+        }
+        return total / count;
+    }
+
+    private double scoreRange(InferenceModel model, int from, int to) {
+        double total = 0;
+        double[][] chunk = new double[Math.min(CHUNK, to - from)][];
+        for (int start = from; start < to; start += CHUNK) {
+            int length = Math.min(CHUNK, to - start);
+            if (chunk.length != length) {
+                chunk = new double[length][];
+            }
+            for (int s = 0; s < length; s++) {
+                chunk[s] = inputs[order[start + s]];
+            }
+            double[][] outputs = model.predictBatch(chunk);
+            for (int s = 0; s < length; s++) {
+                double[] expected = targets[order[start + s]];
+                double sumError = 0;
+                for (int i = 0; i < expected.length; i++) {
+                    double difference = expected[i] - outputs[s][i];
+                    sumError += difference * difference;
+                }
+                total += sumError / expected.length;
+            }
+        }
+        return total;
+    }
+
+    public synchronized boolean shouldStop() {
+        return patience > 0 && evaluationsWithoutImprovement >= patience;
+    }
+
+    public synchronized double getBestError() {
+        return bestError;
+    }
+
+    // -1, пока не было ни одной оценки
+    public synchronized long getBestStep() {
+        return bestStep;
+    }
+
+    // Снимок с лучшей ошибкой, например чтобы сохранить или обслуживать его после ранней остановки
+    public synchronized InferenceModel getBestModel() {
+        return bestModel;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,69 @@
+package circuit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+
+// Запись отчетов в файл: *.csv - CSV с заголовком, иначе JSONL (по объекту на строку).
+// Файл дописывается, поэтому при продолжении обучения с чекпоинта история сохраняется.
+// Каждый отчет сбрасывается на диск сразу: отчеты редкие, а файл нужен и во время обучения.
+public class FileMetricsSink implements MetricsSink {
+    private final BufferedWriter writer;
+    private final boolean csv;
+    private boolean headerWritten;
+
+    public FileMetricsSink(Path file) throws IOException {
+        this.csv = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+        this.headerWritten = Files.exists(file) && Files.size(file) > 0;
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void record(long step, Map<String, Double> values) {
+        StringBuilder line = new StringBuilder();
+        if (csv) {
+            if (!headerWritten) {
+                line.append("step");
+                for (String name : values.keySet()) {
+                    line.append(',').append(name);
+                }
+                line.append('\n');
+                headerWritten = true;
+            }
+            line.append(step);
+            for (double value : values.values()) {
+                line.append(',');
+                if (!Double.isNaN(value)) {
+                    line.append(value);
+                }
+            }
+        } else {
+            line.append("{\"step\":").append(step);
+            for (Map.Entry<String, Double> entry : values.entrySet()) {
+                double value = entry.getValue();
+                line.append(",\"").append(entry.getKey()).append("\":");
+                line.append(Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+            }
+            line.append('}');
+        }
+
+        try {
+            writer.write(line.toString());
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,106 @@
+package circuit;
+
+// Копия SimpleNeuralNetwork в float32: вдвое меньше памяти и трафика на каждое умножение матрицы.
+// Раскладка весов та же, что у WeightStorage, поэтому веса можно перенести обратно через copyTo.
+public class FloatNetwork {
+    private final int inputSize;
+    private final int[] layerSizes;
+    private final int[] offsets;
+    private final int[] biasOffsets;
+    private final float[] weights;
+    private final ThreadLocal<float[][][]> buffers;
+    private final Activation[] activations;
+    private final Kernels kernels = Kernels.get();
+
+    public FloatNetwork(SimpleNeuralNetwork network) {
+        WeightStorage storage = network.getWeights();
+        this.inputSize = network.getInputSize();
+        this.layerSizes = network.getLayerSizes();
+        this.offsets = new int[layerSizes.length];
+        this.biasOffsets = new int[layerSizes.length];
+        this.activations = new Activation[layerSizes.length];
+        for (int l = 0; l < layerSizes.length; l++) {
+            offsets[l] = storage.offset(l);
+            biasOffsets[l] = storage.biasOffset(l);
+            activations[l] = network.getActivation(l);
+        }
+
+        double[] data = storage.data();
+        this.weights = new float[data.length];
+        for (int i = 0; i < data.length; i++) {
+            weights[i] = (float) data[i];
+        }
+
+        // [0] - выходы слоев, [1] - дельты
+        this.buffers = ThreadLocal.withInitial(() -> {
+            float[][][] b = new float[2][layerSizes.length][];
+            for (int l = 0; l < layerSizes.length; l++) {
+                b[0][l] = new float[layerSizes[l]];
+                b[1][l] = new float[layerSizes[l]];
+            }
+            return b;
+        });
+    }
+
+    public float[] predict(float[] input) {
+        return forwardPass(input)[layerSizes.length - 1].clone();
+    }
+
+    public void train(float[] input, float[] targetOutput, float learningRate) {
+        float[][] layerOutputs = forwardPass(input);
+        float[][] deltas = buffers.get()[1];
+        int last = layerSizes.length - 1;
+
+        for (int i = last; i >= 0; i--) {
+            float[] delta = deltas[i];
+            float[] output = layerOutputs[i];
+            if (i == last) {
+                for (int j = 0; j < delta.length; j++) {
+                    delta[j] = targetOutput[j] - output[j];
+                }
+            } else {
+                kernels.multiplyTransposed(deltas[i + 1], weights, offsets[i + 1], delta.length, layerSizes[i + 1],
+                        delta);
+            }
+            activations[i].multiplyDerivative(output, delta, delta.length);
+        }
+
+        float[] currentInput = input;
+        for (int i = 0; i <= last; i++) {
+            kernels.addOuterProduct(weights, offsets[i], currentInput, currentInput.length, deltas[i], layerSizes[i],
+                    learningRate);
+            kernels.axpy(learningRate, deltas[i], 0, weights, biasOffsets[i], layerSizes[i]);
+            currentInput = layerOutputs[i];
+        }
+    }
+
+    // Переносит веса обратно в double-сеть, например чтобы сохранить их через ModelCheckpoint
+    public void copyTo(SimpleNeuralNetwork network) {
+        double[] data = network.getWeights().data();
+        if (data.length != weights.length) {
+            throw new IllegalArgumentException("Network topology does not match");
+        }
+        for (int i = 0; i < weights.length; i++) {
+            data[i] = weights[i];
+        }
+        network.markWeightsChanged();
+    }
+
+    private float[][] forwardPass(float[] input) {
+        if (input.length != inputSize) {
+            throw new IllegalArgumentException("Input must have " + inputSize + " elements");
+        }
+        float[][] layerOutputs = buffers.get()[0];
+        float[] currentInput = input;
+
+        for (int i = 0; i < layerSizes.length; i++) {
+            float[] output = layerOutputs[i];
+            kernels.multiply(currentInput, weights, offsets[i], currentInput.length, layerSizes[i], output);
+            kernels.axpy(1f, weights, biasOffsets[i], output, 0, layerSizes[i]);
+            activations[i].apply(output, layerSizes[i]);
+            currentInput = output;
+        }
+
+        return layerOutputs;
+    }
+}
@@ -0,0 +1,155 @@
+package circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Проверка аналитических градиентов центральными конечными разностями.
+// checkLayer проверяет один Layer на функции L = sum r_i * y_i со случайными r: backward с deltaOut = r
+// должен дать dL/dx в deltaIn и dL/dparams в gradient. checkNetwork сравнивает градиент accumulateGradient
+// (направление спуска, т.е. -dL/dw) с разностями SimpleNeuralNetwork.trainingLoss.
+// Маски dropout при всех проходах одинаковые: они зависят только от зерна и шага, см. Workspace.
+// Ошибка - max |analytic - numeric| / max(|analytic| + |numeric|, FLOOR) по всем координатам.
+// Запуск: java circuit.GradientCheck - все типы слоев и сеть из них, код выхода 1, если какая-то проверка не прошла.
+public final class GradientCheck {
+    private static final double EPSILON = 1e-5;
+    // Ниже этого модуля градиенты сравниваются по абсолютной ошибке: точность разностей ~1e-10
+    private static final double FLOOR = 1e-4;
+    private static final double TOLERANCE = 1e-6;
+
+    private GradientCheck() {
+    }
+
+    public static double checkLayer(Layer layer, int batchSize, long seed) {
+        Random random = new Random(seed);
+        int inputLength = batchSize * layer.inputSize();
+        int outputLength = batchSize * layer.outputSize();
+        double[] params = new double[layer.parameterCount()];
+        layer.initialize(params, 0, random);
+        // Смещения инициализируются нулями, для проверки нужны ненулевые
+        for (int i = 0; i < params.length; i++) {
+            params[i] += random.nextDouble() * 0.2 - 0.1;
+        }
+        double[] input = randomVector(inputLength, random);
+        double[] weights = randomVector(outputLength, random);
+
+        Workspace workspace = new Workspace(layer.inputSize(), new Layer[]{layer});
+        workspace.randomSeed = seed;
+        double[] output = new double[outputLength];
+        layer.forward(params, 0, input, output, batchSize, true, workspace, 0);
+        double[] deltaIn = new double[inputLength];
+        double[] gradient = new double[params.length];
+        layer.backward(params, 0, input, output, weights.clone(), deltaIn, batchSize, gradient, workspace, 0);
+
+        double error = 0;
+        for (int i = 0; i < inputLength; i++) {
+            double saved = input[i];
+            input[i] = saved + EPSILON;
+            double plus = weightedOutput(layer, params, input, weights, batchSize, workspace);
+            input[i] = saved - EPSILON;
+            double minus = weightedOutput(layer, params, input, weights, batchSize, workspace);
+            input[i] = saved;
+            error = Math.max(error, relativeError(deltaIn[i], (plus - minus) / (2 * EPSILON)));
+        }
+        for (int p = 0; p < params.length; p++) {
+            double saved = params[p];
+            params[p] = saved + EPSILON;
+            double plus = weightedOutput(layer, params, input, weights, batchSize, workspace);
+            params[p] = saved - EPSILON;
+            double minus = weightedOutput(layer, params, input, weights, batchSize, workspace);
+            params[p] = saved;
+            error = Math.max(error, relativeError(gradient[p], (plus - minus) / (2 * EPSILON)));
+        }
+        return error;
+    }
+
+    private static double weightedOutput(Layer layer, double[] params, double[] input, double[] weights,
+                                         int batchSize, Workspace workspace) {
+        double[] output = new double[weights.length];
+        layer.forward(params, 0, input, output, batchSize, true, workspace, 0);
+        double sum = 0;
+        for (int i = 0; i < output.length; i++) {
+            sum += weights[i] * output[i];
+        }
+        return sum;
+    }
+
+    // Веса сети возвращаются к исходным значениям, шаг оптимизатора не меняется
+    public static double checkNetwork(SimpleNeuralNetwork network, double[][] inputs, double[][] targetOutputs) {
+        double[] gradient = new double[network.parameterCount()];
+        network.accumulateGradient(inputs, targetOutputs, 0, inputs.length, gradient);
+        double[] data = network.getWeights().data();
+        double error = 0;
+        for (int p = 0; p < data.length; p++) {
+            double saved = data[p];
+            data[p] = saved + EPSILON;
+            double plus = network.trainingLoss(inputs, targetOutputs);
+            data[p] = saved - EPSILON;
+            double minus = network.trainingLoss(inputs, targetOutputs);
+            data[p] = saved;
+            error = Math.max(error, relativeError(-gradient[p], (plus - minus) / (2 * EPSILON)));
+        }
+        network.markWeightsChanged();
+        return error;
+    }
+
+    static double relativeError(double analytic, double numeric) {
+        return Math.abs(analytic - numeric) / Math.max(Math.abs(analytic) + Math.abs(numeric), FLOOR);
+    }
+
+    private static double[] randomVector(int length, Random random) {
+        double[] vector = new double[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = random.nextDouble() * 2 - 1;
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 42;
+        List<Layer> layers = new ArrayList<>(List.of(
+                new DenseLayer(7, 5),
+                new DropoutLayer(6, 0.3)));
+        Activation[] activations = {Activation.SIGMOID, Activation.TANH, Activation.RELU, Activation.leakyRelu(0.1),
+                Activation.IDENTITY};
+        for (Activation activation : activations) {
+            layers.add(new ActivationLayer(6, activation));
+        }
+
+        boolean passed = true;
+        for (Layer layer : layers) {
+            for (int batchSize : new int[]{1, 3}) {
+                passed &= report(layer + ", batch " + batchSize, checkLayer(layer, batchSize, seed), TOLERANCE);
+            }
+        }
+        // Таблица с линейной интерполяцией: производная y(1 - y) совпадает с наклоном таблицы лишь приближенно
+        passed &= report("fast sigmoid, batch 3", checkLayer(new ActivationLayer(6, Activation.FAST_SIGMOID), 3, seed),
+                1e-2);
+
+        SimpleNeuralNetwork network = new SimpleNeuralNetwork(List.of(
+                new DenseLayer(6, 8), new ActivationLayer(8, Activation.TANH), new DropoutLayer(8, 0.25),
+                new DenseLayer(8, 5), new ActivationLayer(5, Activation.leakyRelu(0.1)),
+                new DenseLayer(5, 6), new ActivationLayer(6, Activation.SIGMOID)), new Random(seed));
+        Random random = new Random(seed + 1);
+        double[][] inputs = new double[4][];
+        double[][] targets = new double[4][];
+        for (int s = 0; s < inputs.length; s++) {
+            inputs[s] = randomVector(6, random);
+            targets[s] = randomVector(6, random);
+        }
+        passed &= report("network " + network.getLayers() + ", batch " + inputs.length,
+                checkNetwork(network, inputs, targets), TOLERANCE);
+        passed &= report("network, batch 1", checkNetwork(network, Arrays.copyOf(inputs, 1), Arrays.copyOf(targets, 1)),
+                TOLERANCE);
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean report(String name, double error, double tolerance) {
+        boolean passed = error <= tolerance;
+        System.out.printf("%-70s %.3e %s%n", name, error, passed ? "OK" : "FAIL");
+        return passed;
+    }
+}
@@ -0,0 +1,111 @@
+package circuit;
+
+// Неизменяемый снимок обученной сети только для инференса.
+// Веса и слои копируются при создании, поэтому снимок можно вызывать из любого числа потоков,
+// пока исходная сеть продолжает обучаться. Снимок нужно снимать между шагами обучения.
+public final class InferenceModel {
+    private final int inputSize;
+    private final int[] layerSizes;
+    private final WeightStorage weights;
+    private final Layer[] layers;
+    private final int[] parameterOffsets;
+    // Первый слой Layer после выхода первого логического слоя, с него начинается predictFromLatentVector
+    private final int latentStart;
+    private final ThreadLocal<Workspace> workspaces;
+
+    public InferenceModel(SimpleNeuralNetwork network) {
+        this.inputSize = network.getInputSize();
+        this.layerSizes = network.getLayerSizes();
+        this.weights = new WeightStorage(inputSize, layerSizes);
+        network.copyWeightsTo(weights.data());
+        this.layers = network.getLayers().toArray(new Layer[0]);
+        this.parameterOffsets = new int[layers.length];
+        int start = layers.length;
+        for (int i = 1; i < layers.length; i++) {
+            parameterOffsets[i] = parameterOffsets[i - 1] + layers[i - 1].parameterCount();
+            if (start == layers.length && layers[i] instanceof DenseLayer) {
+                start = i;
+            }
+        }
+        this.latentStart = start;
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(inputSize, layers));
+    }
+
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    public int getOutputSize() {
+        return layerSizes[layerSizes.length - 1];
+    }
+
+    // Для движков, которые сами раскладывают слои снимка по потокам (PipelinedInference)
+    Layer[] layers() {
+        return layers;
+    }
+
+    double[] parameters() {
+        return weights.data();
+    }
+
+    int parameterOffset(int layer) {
+        return parameterOffsets[layer];
+    }
+
+    public double[] predict(double[] input) {
+        if (input.length != inputSize) {
+            throw new IllegalArgumentException("Input must have " + inputSize + " elements");
+        }
+        return forwardPass(input, 0);
+    }
+
+    // Выход сети по выходу первого слоя, как SimpleNeuralNetwork.predictFromLatentVector
+    public double[] predictFromLatentVector(double[] latentVector) {
+        if (latentVector.length != layerSizes[0]) {
+            throw new IllegalArgumentException("Size of latent vector must match the size of the first hidden layer");
+        }
+        return forwardPass(latentVector, latentStart);
+    }
+
+    // Весь батч проходит через блочное умножение матриц за один раз
+    public double[][] predictBatch(double[][] inputs) {
+        int batchSize = inputs.length;
+        // Для пустого батча буферы Workspace не выделяются
+        if (batchSize == 0) {
+            return new double[0][];
+        }
+        Workspace workspace = workspaces.get();
+        workspace.ensureBatchCapacity(batchSize);
+        for (int s = 0; s < batchSize; s++) {
+            if (inputs[s].length != inputSize) {
+                throw new IllegalArgumentException("Row " + s + " must have " + inputSize + " elements");
+            }
+            System.arraycopy(inputs[s], 0, workspace.batchInput, s * inputSize, inputSize);
+        }
+
+        double[] currentInput = workspace.batchInput;
+        for (int i = 0; i < layers.length; i++) {
+            layers[i].forward(weights.data(), parameterOffsets[i], currentInput, workspace.batchOutputs[i], batchSize,
+                    false, workspace, i);
+            currentInput = workspace.batchOutputs[i];
+        }
+
+        int outputSize = getOutputSize();
+        double[][] result = new double[batchSize][outputSize];
+        for (int s = 0; s < batchSize; s++) {
+            System.arraycopy(currentInput, s * outputSize, result[s], 0, outputSize);
+        }
+        return result;
+    }
+
+    private double[] forwardPass(double[] input, int firstLayer) {
+        Workspace workspace = workspaces.get();
+        double[] currentInput = input;
+        for (int i = firstLayer; i < layers.length; i++) {
+            layers[i].forward(weights.data(), parameterOffsets[i], currentInput, workspace.outputs[i], 1, false,
+                    workspace, i);
+            currentInput = workspace.outputs[i];
+        }
+        return currentInput.clone();
+    }
+}
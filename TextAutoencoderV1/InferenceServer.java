@@ -0,0 +1,212 @@
+package circuit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Фронтенд инференса с объединением запросов в микробатчи.
+// Вызывающие потоки (в том числе виртуальные) только ставят запрос в очередь и ждут результат,
+// а один поток-диспетчер собирает запросы, пришедшие в пределах maxDelayMicros от первого,
+// но не больше maxBatchSize, и считает их одним predictBatch.
+// Модель можно заменить на лету через setModel: уже собранный батч досчитывается на старой.
+public class InferenceServer implements AutoCloseable {
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    // closed меняется и проверяется перед постановкой в очередь под этой блокировкой: после close
+    // в очередь уже ничего не попадет, и диспетчер, увидев closed и пустую очередь, может завершаться
+    private final Object enqueueLock = new Object();
+    private volatile InferenceModel model;
+    private volatile boolean closed;
+
+    private static final class Request {
+        final double[] input;
+        final boolean latent;
+        final CompletableFuture<double[]> result = new CompletableFuture<>();
+
+        Request(double[] input, boolean latent) {
+            this.input = input;
+            this.latent = latent;
+        }
+    }
+
+    public InferenceServer(InferenceModel model, int maxBatchSize, long maxDelayMicros) {
+        if (maxBatchSize < 1 || maxDelayMicros < 0) {
+            throw new IllegalArgumentException("Batch size must be positive and delay must not be negative");
+        }
+        this.model = model;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.dispatcher = new Thread(this::dispatch, "inference-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    public void setModel(InferenceModel model) {
+        this.model = model;
+    }
+
+    public InferenceModel getModel() {
+        return model;
+    }
+
+    public CompletableFuture<double[]> submit(double[] input) {
+        return enqueue(new Request(input, false));
+    }
+
+    public CompletableFuture<double[]> submitLatent(double[] latentVector) {
+        return enqueue(new Request(latentVector, true));
+    }
+
+    // Блокирующий вариант submit
+    public double[] predict(double[] input) throws InterruptedException {
+        return await(submit(input));
+    }
+
+    public double[] predictFromLatentVector(double[] latentVector) throws InterruptedException {
+        return await(submitLatent(latentVector));
+    }
+
+    private CompletableFuture<double[]> enqueue(Request request) {
+        synchronized (enqueueLock) {
+            if (closed) {
+                throw new IllegalStateException("Inference server is closed");
+            }
+            queue.add(request);
+        }
+        return request.result;
+    }
+
+    private static double[] await(CompletableFuture<double[]> result) throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void dispatch() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    // Сначала забираем то, что уже в очереди, и ждем только если ее не хватило
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                run(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // close() не дождался очереди - оставшиеся запросы отменяются ниже
+        } catch (Throwable e) {
+            // Error модели (например, OutOfMemoryError) останавливает диспетчер: новые запросы больше
+            // не принимаются, а уже поставленные завершаются этой ошибкой, а не ждут вечно
+            synchronized (enqueueLock) {
+                closed = true;
+            }
+            finishPending(batch, e);
+            throw e;
+        }
+        finishPending(batch, null);
+    }
+
+    // Отменяет (failure == null) или завершает с ошибкой все незавершенные запросы батча и очереди
+    private void finishPending(List<Request> batch, Throwable failure) {
+        for (Request request : batch) {
+            finish(request, failure);
+        }
+        Request request;
+        while ((request = queue.poll()) != null) {
+            finish(request, failure);
+        }
+    }
+
+    private static void finish(Request request, Throwable failure) {
+        if (failure == null) {
+            request.result.cancel(false);
+        } else {
+            request.result.completeExceptionally(failure);
+        }
+    }
+
+    private void run(List<Request> batch) {
+        InferenceModel current = model;
+        // Обычные входы считаются одним батчем, латентные векторы - по одному
+        List<Request> full = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            if (!request.latent) {
+                full.add(request);
+                continue;
+            }
+            try {
+                request.result.complete(current.predictFromLatentVector(request.input));
+            } catch (RuntimeException e) {
+                request.result.completeExceptionally(e);
+            }
+        }
+        if (full.isEmpty()) {
+            return;
+        }
+
+        double[][] inputs = new double[full.size()][];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = full.get(i).input;
+        }
+        try {
+            double[][] outputs = current.predictBatch(inputs);
+            for (int i = 0; i < outputs.length; i++) {
+                full.get(i).result.complete(outputs[i]);
+            }
+        } catch (RuntimeException e) {
+            // Неверный вход одного запроса не должен ронять остальных
+            for (Request request : full) {
+                try {
+                    request.result.complete(current.predict(request.input));
+                } catch (RuntimeException single) {
+                    request.result.completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    // Дожидается уже поставленных запросов и останавливает диспетчер.
+    // Если вызывающий поток прерван, оставшиеся запросы отменяются, а флаг прерывания сохраняется
+    @Override
+    public void close() {
+        synchronized (enqueueLock) {
+            closed = true;
+        }
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            dispatcher.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package circuit;
+
+import java.util.Arrays;
+
+// Подключаемый бэкенд вычислительных ядер. Наследники реализуют только примитивы axpy/dot/sigmoid,
+// матричные операции собираются из них построчно по row-major матрицам.
+// Бэкенд выбирается один раз при загрузке класса: VectorKernels (jdk.incubator.vector), если модуль
+// подключен (--add-modules jdk.incubator.vector), иначе ScalarKernels. -Dsnn.kernels=scalar отключает SIMD.
+public abstract class Kernels {
+    private static final Kernels INSTANCE = select();
+
+    public static Kernels get() {
+        return INSTANCE;
+    }
+
+    private static Kernels select() {
+        if (!"scalar".equals(System.getProperty("snn.kernels"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Kernels) Class.forName("circuit.VectorKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Модуль есть, но класс не собран с ним - остаемся на скалярном пути
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    public abstract String name();
+
+    // y[yOffset..] += a * x[xOffset..], length элементов
+    public abstract void axpy(double a, double[] x, int xOffset, double[] y, int yOffset, int length);
+
+    public abstract double dot(double[] x, int xOffset, double[] y, int yOffset, int length);
+
+    public abstract void sigmoid(double[] values, int length);
+
+    public abstract void axpy(float a, float[] x, int xOffset, float[] y, int yOffset, int length);
+
+    public abstract float dot(float[] x, int xOffset, float[] y, int yOffset, int length);
+
+    public abstract void sigmoid(float[] values, int length);
+
+    // result[0..cols) = vector * matrix, matrix[rows][cols] начинается с offset
+    public void multiply(double[] vector, double[] matrix, int offset, int rows, int cols, double[] result) {
+        Arrays.fill(result, 0, cols, 0);
+        for (int j = 0, row = offset; j < rows; j++, row += cols) {
+            axpy(vector[j], matrix, row, result, 0, cols);
+        }
+    }
+
+    // result[0..rows) = matrix * vector, т.е. умножение на транспонированную матрицу без копии
+    public void multiplyTransposed(double[] vector, double[] matrix, int offset, int rows, int cols, double[] result) {
+        for (int j = 0, row = offset; j < rows; j++, row += cols) {
+            result[j] = dot(vector, 0, matrix, row, cols);
+        }
+    }
+
+    // matrix += learningRate * input^T * delta (обновление весов ранга 1)
+    public void addOuterProduct(double[] matrix, int offset, double[] input, int rows, double[] delta, int cols,
+                                double learningRate) {
+        for (int j = 0, row = offset; j < rows; j++, row += cols) {
+            axpy(learningRate * input[j], delta, 0, matrix, row, cols);
+        }
+    }
+
+    public void multiply(float[] vector, float[] matrix, int offset, int rows, int cols, float[] result) {
+        Arrays.fill(result, 0, cols, 0);
+        for (int j = 0, row = offset; j < rows; j++, row += cols) {
+            axpy(vector[j], matrix, row, result, 0, cols);
+        }
+    }
+
+    public void multiplyTransposed(float[] vector, float[] matrix, int offset, int rows, int cols, float[] result) {
+        for (int j = 0, row = offset; j < rows; j++, row += cols) {
+            result[j] = dot(vector, 0, matrix, row, cols);
+        }
+    }
+
+    public void addOuterProduct(float[] matrix, int offset, float[] input, int rows, float[] delta, int cols,
+                                float learningRate) {
+        for (int j = 0, row = offset; j < rows; j++, row += cols) {
+            axpy(learningRate * input[j], delta, 0, matrix, row, cols);
+        }
+    }
+}
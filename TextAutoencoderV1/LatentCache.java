@@ -0,0 +1,128 @@
+package circuit;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// LRU-кэш латентных векторов: повторяющиеся куски текста кодируются один раз.
+// Ключ - содержимое входа (хэш плюс сравнение массивов, так что коллизии хэша не дают чужой вектор).
+// Размер ограничен в байтах: учитываются и ключ, и значение. При любом изменении весов сети
+// (по getWeightsVersion) кэш очищается при следующем обращении.
+public class LatentCache {
+    // Заголовки массивов и записи в LinkedHashMap, приблизительно
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final SimpleNeuralNetwork network;
+    private final int layer;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, double[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long version;
+    private long hits;
+    private long misses;
+
+    private static final class Key {
+        final double[] input;
+        final int hash;
+
+        Key(double[] input) {
+            this.input = input;
+            this.hash = Arrays.hashCode(input);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).hash == hash && Arrays.equals(((Key) other).input, input);
+        }
+    }
+
+    public LatentCache(SimpleNeuralNetwork network, long maxBytes) {
+        this(network, 0, maxBytes);
+    }
+
+    public LatentCache(SimpleNeuralNetwork network, int layer, long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+        this.network = network;
+        this.layer = layer;
+        this.maxBytes = maxBytes;
+        this.version = network.getWeightsVersion();
+    }
+
+    // То же, что network.encode(input, layer), но из кэша, если этот вход уже кодировался текущими весами
+    public double[] encode(double[] input) {
+        long current = network.getWeightsVersion();
+        synchronized (this) {
+            if (current != version) {
+                clear();
+                version = current;
+            }
+            double[] latent = entries.get(new Key(input));
+            if (latent != null) {
+                hits++;
+                return latent.clone();
+            }
+            misses++;
+        }
+
+        double[] latent = network.encode(input, layer);
+        synchronized (this) {
+            // Пока считали, веса могли измениться - тогда результат уже устарел и в кэш не идет
+            if (network.getWeightsVersion() == current && current == version) {
+                put(new Key(input.clone()), latent.clone());
+            }
+        }
+        return latent;
+    }
+
+    private void put(Key key, double[] latent) {
+        long size = entrySize(key, latent);
+        if (size > maxBytes) {
+            return;
+        }
+        double[] previous = entries.put(key, latent);
+        if (previous != null) {
+            bytes -= entrySize(key, previous);
+        }
+        bytes += size;
+
+        Iterator<Map.Entry<Key, double[]>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes) {
+            Map.Entry<Key, double[]> entry = eldest.next();
+            bytes -= entrySize(entry.getKey(), entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    private static long entrySize(Key key, double[] latent) {
+        return (long) (key.input.length + latent.length) * Double.BYTES + ENTRY_OVERHEAD;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long sizeInBytes() {
+        return bytes;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+}
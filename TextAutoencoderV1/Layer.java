@@ -0,0 +1,37 @@
+package circuit;
+
+import java.util.Random;
+
+// Слой сети SimpleNeuralNetwork. Параметры всех слоев лежат в одном плоском массиве (WeightStorage),
+// слой получает массив и смещение своего отрезка. Входы и выходы батча - row-major матрицы
+// [batchSize][inputSize] и [batchSize][outputSize]; один пример - это батч из одной строки.
+// Градиенты передаются в знаковой конвенции сети: направление спуска, для выхода это target - output.
+// Слои не хранят состояния между вызовами, поэтому один экземпляр можно использовать из нескольких потоков.
+public interface Layer {
+
+    int inputSize();
+
+    int outputSize();
+
+    default int parameterCount() {
+        return 0;
+    }
+
+    // Начальные значения параметров в params[offset, offset + parameterCount())
+    default void initialize(double[] params, int offset, Random random) {
+    }
+
+    // index - номер слоя в сети, по нему слой берет свои буферы из workspace
+    void forward(double[] params, int offset, double[] input, double[] output, int batchSize, boolean training,
+                 Workspace workspace, int index);
+
+    // deltaOut - градиент по выходу слоя. Пишет градиент по входу в deltaIn, если он не null,
+    // и прибавляет градиент параметров к gradient[offset...], если gradient не null.
+    void backward(double[] params, int offset, double[] input, double[] output, double[] deltaOut, double[] deltaIn,
+                  int batchSize, double[] gradient, Workspace workspace, int index);
+
+    // Шаг оптимизатора по одному примеру без отдельного массива градиента
+    default void update(double[] params, int offset, double[] input, double[] deltaOut, Optimizer optimizer,
+                        double learningRate) {
+    }
+}
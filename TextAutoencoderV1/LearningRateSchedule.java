@@ -0,0 +1,42 @@
+package circuit;
+
+// Расписание скорости обучения: rate(baseRate, step) - скорость на шаге step (с 1),
+// baseRate - значение, переданное в train/trainBatch.
+public interface LearningRateSchedule {
+
+    double rate(double baseRate, long step);
+
+    static LearningRateSchedule constant() {
+        return (baseRate, step) -> baseRate;
+    }
+
+    // Умножение на factor каждые everySteps шагов
+    static LearningRateSchedule stepDecay(double factor, long everySteps) {
+        if (everySteps < 1) {
+            throw new IllegalArgumentException("Decay interval must be positive");
+        }
+        return (baseRate, step) -> baseRate * Math.pow(factor, (step - 1) / everySteps);
+    }
+
+    static LearningRateSchedule exponential(double decayPerStep) {
+        return (baseRate, step) -> baseRate * Math.pow(decayPerStep, step - 1);
+    }
+
+    // Косинусное затухание от baseRate до baseRate * minFraction за totalSteps шагов, дальше minFraction
+    static LearningRateSchedule cosine(long totalSteps, double minFraction) {
+        if (totalSteps < 1) {
+            throw new IllegalArgumentException("Total steps must be positive");
+        }
+        return (baseRate, step) -> {
+            double progress = Math.min(1, (step - 1) / (double) totalSteps);
+            return baseRate * (minFraction + (1 - minFraction) * 0.5 * (1 + Math.cos(Math.PI * progress)));
+        };
+    }
+
+    // Линейный разгон за warmupSteps шагов, затем расписание then со сдвинутым номером шага
+    static LearningRateSchedule warmup(long warmupSteps, LearningRateSchedule then) {
+        return (baseRate, step) -> step <= warmupSteps
+                ? baseRate * step / warmupSteps
+                : then.rate(baseRate, step - warmupSteps);
+    }
+}
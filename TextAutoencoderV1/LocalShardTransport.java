@@ -0,0 +1,60 @@
+package circuit;
+
+import java.io.IOException;
+
+// Шарды в том же процессе, без сети и сериализации: для тестов и отладки ShardedNetwork.
+// Запрос выполняется сразу в send, receive отдает сохраненный ответ.
+public class LocalShardTransport implements ShardTransport {
+    private final ShardWorker[] workers;
+    private final double[][] responses;
+
+    public LocalShardTransport(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.workers = new ShardWorker[shardCount];
+        this.responses = new double[shardCount][];
+        for (int s = 0; s < shardCount; s++) {
+            workers[s] = new ShardWorker();
+        }
+    }
+
+    @Override
+    public int shardCount() {
+        return workers.length;
+    }
+
+    @Override
+    public void send(int shard, int operation, int layer, double argument, double[] payload, int offset, int length)
+            throws IOException {
+        if (responses[shard] != null) {
+            throw new IOException("Shard " + shard + " has an unread response");
+        }
+        ShardWorker worker = workers[shard];
+        double[] buffer = worker.payloadBuffer(operation, layer, length);
+        System.arraycopy(payload, offset, buffer, 0, length);
+        try {
+            // Ответ - буфер шарда, он не меняется до следующего send этому шарду
+            responses[shard] = worker.handle(operation, layer, argument, buffer);
+        } catch (RuntimeException e) {
+            throw new IOException("Shard " + shard + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void receive(int shard, double[] target, int offset, int length) throws IOException {
+        double[] response = responses[shard];
+        if (response == null) {
+            throw new IOException("Shard " + shard + " has no pending request");
+        }
+        responses[shard] = null;
+        if (response.length != length) {
+            throw new IOException("Shard " + shard + " returned " + response.length + " values, expected " + length);
+        }
+        System.arraycopy(response, 0, target, offset, length);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,110 @@
+package circuit;
+
+import java.util.Arrays;
+
+// Магнитудное прореживание SimpleNeuralNetwork: в каждом слое обнуляется заданная доля весов с наименьшим |w|.
+// Смещения не прореживаются. Обучение снова делает обнуленные веса ненулевыми, поэтому при дообучении
+// после каждого шага вызывается applyMask - это делает fineTune.
+public class MagnitudePruner {
+    private final SimpleNeuralNetwork network;
+    private final WeightStorage weights;
+    // Индексы обнуленных весов каждого слоя в WeightStorage
+    private final int[][] pruned;
+
+    public MagnitudePruner(SimpleNeuralNetwork network) {
+        this.network = network;
+        this.weights = network.getWeights();
+        this.pruned = new int[weights.layerCount()][0];
+    }
+
+    // Одна доля для всех слоев
+    public void prune(double sparsity) {
+        for (int l = 0; l < weights.layerCount(); l++) {
+            prune(l, sparsity);
+        }
+    }
+
+    // Обнуляет round(sparsity * rows * cols) весов слоя с наименьшим модулем, включая уже обнуленные
+    public void prune(int layer, double sparsity) {
+        if (layer < 0 || layer >= weights.layerCount()) {
+            throw new IllegalArgumentException("Invalid layer number");
+        }
+        if (sparsity < 0 || sparsity > 1) {
+            throw new IllegalArgumentException("Sparsity must be in [0, 1]");
+        }
+        int offset = weights.offset(layer);
+        int size = weights.rows(layer) * weights.cols(layer);
+        int count = (int) Math.round(sparsity * size);
+        double[] data = weights.data();
+        if (count == 0) {
+            pruned[layer] = new int[0];
+            return;
+        }
+
+        double[] magnitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            magnitudes[i] = Math.abs(data[offset + i]);
+        }
+        Arrays.sort(magnitudes);
+        double threshold = magnitudes[count - 1];
+
+        // Сначала все веса строго меньше порога, затем равные ему, пока не наберется count
+        int[] indices = new int[count];
+        int found = 0;
+        for (int i = 0; i < size && found < count; i++) {
+            if (Math.abs(data[offset + i]) < threshold) {
+                indices[found++] = offset + i;
+            }
+        }
+        for (int i = 0; i < size && found < count; i++) {
+            if (Math.abs(data[offset + i]) == threshold) {
+                indices[found++] = offset + i;
+            }
+        }
+        Arrays.sort(indices);
+        pruned[layer] = indices;
+        applyMask();
+    }
+
+    // Снова обнуляет прореженные веса, например после шага обучения
+    public void applyMask() {
+        double[] data = weights.data();
+        for (int[] indices : pruned) {
+            for (int index : indices) {
+                data[index] = 0;
+            }
+        }
+        network.markWeightsChanged();
+    }
+
+    // Дообучение через train с сохранением прореживания
+    public void fineTune(double[][] inputs, double[][] targetOutputs, int epochs, double learningRate) {
+        if (inputs.length != targetOutputs.length) {
+            throw new IllegalArgumentException("Number of inputs must match number of target outputs");
+        }
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            for (int i = 0; i < inputs.length; i++) {
+                network.train(inputs[i], targetOutputs[i], learningRate);
+                applyMask();
+            }
+        }
+    }
+
+    // Фактическая доля нулевых весов слоя
+    public double sparsity(int layer) {
+        int offset = weights.offset(layer);
+        int size = weights.rows(layer) * weights.cols(layer);
+        double[] data = weights.data();
+        int zeros = 0;
+        for (int i = offset; i < offset + size; i++) {
+            if (data[i] == 0) {
+                zeros++;
+            }
+        }
+        return (double) zeros / size;
+    }
+
+    public SparseNetwork toSparse() {
+        return new SparseNetwork(network);
+    }
+}
@@ -0,0 +1,67 @@
+package circuit;
+
+import java.util.Arrays;
+
+// Блочные матричные ядра для мини-батчей. Все матрицы плоские, row-major.
+// Блок BLOCK x BLOCK весов (32 КБ) остается в кэше, пока по нему проходят все строки батча.
+// Внутренние циклы по блоку выполняет выбранный бэкенд Kernels.
+public final class MatrixKernels {
+    static final int BLOCK = 64;
+    private static final Kernels KERNELS = Kernels.get();
+
+    private MatrixKernels() {
+    }
+
+    // c[m][n] = a[m][k] * b[k][n], b начинается с bOffset
+    public static void multiply(double[] a, int m, int k, double[] b, int bOffset, int n, double[] c) {
+        Arrays.fill(c, 0, m * n, 0);
+        for (int kk = 0; kk < k; kk += BLOCK) {
+            int kEnd = Math.min(kk + BLOCK, k);
+            for (int nn = 0; nn < n; nn += BLOCK) {
+                int nEnd = Math.min(nn + BLOCK, n);
+                for (int i = 0; i < m; i++) {
+                    int cRow = i * n;
+                    int aRow = i * k;
+                    for (int p = kk; p < kEnd; p++) {
+                        KERNELS.axpy(a[aRow + p], b, bOffset + p * n + nn, c, cRow + nn, nEnd - nn);
+                    }
+                }
+            }
+        }
+    }
+
+    // c[m][k] = a[m][n] * b^T, где b[k][n] начинается с bOffset (транспонирование без копии)
+    public static void multiplyTransposed(double[] a, int m, int n, double[] b, int bOffset, int k, double[] c) {
+        Arrays.fill(c, 0, m * k, 0);
+        for (int jj = 0; jj < k; jj += BLOCK) {
+            int jEnd = Math.min(jj + BLOCK, k);
+            for (int nn = 0; nn < n; nn += BLOCK) {
+                int nEnd = Math.min(nn + BLOCK, n);
+                for (int i = 0; i < m; i++) {
+                    int aRow = i * n;
+                    int cRow = i * k;
+                    for (int j = jj; j < jEnd; j++) {
+                        c[cRow + j] += KERNELS.dot(a, aRow + nn, b, bOffset + j * n + nn, nEnd - nn);
+                    }
+                }
+            }
+        }
+    }
+
+    // c[k][n] += a^T * b, где a[m][k], b[m][n], c начинается с cOffset
+    public static void accumulateTransposed(double[] a, int m, int k, double[] b, int n, double[] c, int cOffset) {
+        for (int jj = 0; jj < k; jj += BLOCK) {
+            int jEnd = Math.min(jj + BLOCK, k);
+            for (int nn = 0; nn < n; nn += BLOCK) {
+                int nEnd = Math.min(nn + BLOCK, n);
+                for (int i = 0; i < m; i++) {
+                    int aRow = i * k;
+                    int bRow = i * n;
+                    for (int j = jj; j < jEnd; j++) {
+                        KERNELS.axpy(a[aRow + j], b, bRow + nn, c, cOffset + j * n + nn, nEnd - nn);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package circuit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Ряды метрик в памяти фиксированного размера.
+// В режиме downsample при заполнении соседние точки попарно усредняются, а новые точки дальше
+// набираются усреднением вдвое большего числа отчетов - ряд всегда покрывает всю историю обучения.
+// Без downsample это кольцевой буфер последних capacity точек. NaN пропускаются.
+public class MetricSeries implements MetricsSink {
+    private final int capacity;
+    private final boolean downsample;
+    private final Map<String, Series> series = new HashMap<>();
+
+    private final class Series {
+        final double[] values = new double[capacity];
+        final long[] steps = new long[capacity];
+        int start;
+        int count;
+        int stride = 1;
+        double pendingSum;
+        int pendingCount;
+
+        void add(long step, double value) {
+            pendingSum += value;
+            if (++pendingCount < stride) {
+                return;
+            }
+            double mean = pendingSum / pendingCount;
+            pendingSum = 0;
+            pendingCount = 0;
+
+            if (count == capacity) {
+                if (downsample) {
+                    for (int i = 0; i < capacity / 2; i++) {
+                        values[i] = (values[2 * i] + values[2 * i + 1]) / 2;
+                        steps[i] = steps[2 * i + 1];
+                    }
+                    count = capacity / 2;
+                    stride *= 2;
+                } else {
+                    start = (start + 1) % capacity;
+                    count--;
+                }
+            }
+            int index = (start + count) % capacity;
+            values[index] = mean;
+            steps[index] = step;
+            count++;
+        }
+    }
+
+    public MetricSeries(int capacity, boolean downsample) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2");
+        }
+        this.capacity = capacity;
+        this.downsample = downsample;
+    }
+
+    @Override
+    public synchronized void record(long step, Map<String, Double> values) {
+        for (Map.Entry<String, Double> entry : values.entrySet()) {
+            add(entry.getKey(), step, entry.getValue());
+        }
+    }
+
+    public synchronized void add(String name, long step, double value) {
+        if (!Double.isNaN(value)) {
+            series.computeIfAbsent(name, n -> new Series()).add(step, value);
+        }
+    }
+
+    // Копия точек ряда в порядке времени
+    public synchronized double[] values(String name) {
+        Series s = series.get(name);
+        if (s == null) {
+            return new double[0];
+        }
+        double[] result = new double[s.count];
+        for (int i = 0; i < s.count; i++) {
+            result[i] = s.values[(s.start + i) % capacity];
+        }
+        return result;
+    }
+
+    public synchronized long[] steps(String name) {
+        Series s = series.get(name);
+        if (s == null) {
+            return new long[0];
+        }
+        long[] result = new long[s.count];
+        for (int i = 0; i < s.count; i++) {
+            result[i] = s.steps[(s.start + i) % capacity];
+        }
+        return result;
+    }
+
+    public synchronized double last(String name) {
+        double[] v = values(name);
+        return v.length == 0 ? Double.NaN : v[v.length - 1];
+    }
+}
@@ -0,0 +1,28 @@
+package circuit;
+
+import java.io.IOException;
+import java.util.Map;
+
+// Получатель отчетов TrainingMetrics. values - метрики одного отчета в постоянном порядке,
+// отсутствующее значение (например, ошибка на тесте между проверками) передается как NaN.
+public interface MetricsSink extends AutoCloseable {
+
+    void record(long step, Map<String, Double> values);
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    // Для машин без дисплея: одна строка в stdout на отчет
+    static MetricsSink console() {
+        return (step, values) -> {
+            StringBuilder line = new StringBuilder("step ").append(step);
+            for (Map.Entry<String, Double> entry : values.entrySet()) {
+                if (!entry.getValue().isNaN()) {
+                    line.append(String.format(" %s=%.4g", entry.getKey(), entry.getValue()));
+                }
+            }
+            System.out.println(line);
+        };
+    }
+}
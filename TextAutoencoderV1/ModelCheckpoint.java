@@ -0,0 +1,308 @@
+package circuit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Бинарный формат весов (little-endian):
+//   int magic 'SNNW', int version, int dtype, int inputSize, int layerCount, int[layerCount] layerSizes,
+//   выравнивание до 8 байт, затем веса всех слоев подряд.
+// Версия 2 дописывает после весов состояние оптимизатора:
+//   int длина имени, имя в UTF-8, выравнивание до 8 байт, long номер шага, int число буферов, int 0,
+//   затем буферы моментов по parameterCount double каждый.
+// Версии 1 и 2 хранят только матрицы слоев, без смещений. Версия 3 хранит параметры в раскладке WeightStorage
+// (матрица слоя, за ней его смещения), секция оптимизатора в ней необязательна. Версия 4 - та же версия 3,
+// но заголовок дополнен нулями до DATA_ALIGNMENT байт: отображенные веса (OffHeapStorage.map) начинаются
+// на границе, которой выровнены выделенные в Arena хранилища. Пишется всегда версия 4, версия 3 читается как есть,
+// версии 1 и 2 - с нулевыми смещениями.
+// Файл читается через MappedByteBuffer, поэтому несколько процессов делят одни и те же страницы page cache.
+public final class ModelCheckpoint {
+    static final int MAGIC = 0x534E4E57;
+    static final int VERSION = 1;
+    static final int VERSION_WITH_OPTIMIZER = 2;
+    static final int VERSION_WITH_BIASES = 3;
+    static final int VERSION_ALIGNED = 4;
+    static final int DATA_ALIGNMENT = 64;
+    static final int DTYPE_FLOAT64 = 1;
+
+    private static final int WRITE_CHUNK = 8192;
+
+    public static final class Header {
+        public final int version;
+        public final int dtype;
+        public final int inputSize;
+        public final int[] layerSizes;
+        public final int dataOffset;
+
+        Header(int version, int dtype, int inputSize, int[] layerSizes) {
+            this.version = version;
+            this.dtype = dtype;
+            this.inputSize = inputSize;
+            this.layerSizes = layerSizes;
+            this.dataOffset = dataOffset(version, layerSizes.length);
+        }
+
+        public boolean hasBiases() {
+            return version >= VERSION_WITH_BIASES;
+        }
+
+        // Число значений в файле: со смещениями только начиная с версии 3
+        public long parameterCount() {
+            long count = 0;
+            for (int l = 0; l < layerSizes.length; l++) {
+                count += (long) (l == 0 ? inputSize : layerSizes[l - 1]) * layerSizes[l];
+                if (hasBiases()) {
+                    count += layerSizes[l];
+                }
+            }
+            return count;
+        }
+    }
+
+    private ModelCheckpoint() {
+    }
+
+    static int headerSize(int layerCount) {
+        int size = 5 * Integer.BYTES + layerCount * Integer.BYTES;
+        return (size + 7) & ~7;
+    }
+
+    // Начало весов: начиная с версии 4 заголовок выровнен до DATA_ALIGNMENT
+    static int dataOffset(int version, int layerCount) {
+        int size = headerSize(layerCount);
+        return version >= VERSION_ALIGNED ? (size + DATA_ALIGNMENT - 1) & -DATA_ALIGNMENT : size;
+    }
+
+    public static void write(Path path, int inputSize, int[] layerSizes, double[] data) throws IOException {
+        write(path, inputSize, layerSizes, data, null, 0, null);
+    }
+
+    public static void write(Path path, int inputSize, int[] layerSizes, double[] data, Optimizer optimizer)
+            throws IOException {
+        write(path, inputSize, layerSizes, data, optimizer.name(), optimizer.getStep(), optimizer.state);
+    }
+
+    // optimizerName == null - файл только с весами, без секции оптимизатора
+    static void write(Path path, int inputSize, int[] layerSizes, double[] data, String optimizerName, long step,
+                      double[][] state) throws IOException {
+        writeAtomically(path, channel -> writeFile(channel, inputSize, layerSizes, data, optimizerName, step, state));
+    }
+
+    interface FileContents {
+        void writeTo(FileChannel channel) throws IOException;
+    }
+
+    // Файл пишется рядом под именем <path>.tmp, сбрасывается на диск и только затем атомарно переименовывается
+    // в path: после падения или отключения питания на месте path остается либо старый, либо новый файл целиком.
+    static void writeAtomically(Path path, FileContents contents) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                contents.writeTo(channel);
+                // Без этого переименование может попасть на диск раньше данных
+                channel.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static void writeFile(FileChannel channel, int inputSize, int[] layerSizes, double[] data,
+                                  String optimizerName, long step, double[][] state) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(dataOffset(VERSION_ALIGNED, layerSizes.length))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION_ALIGNED).putInt(DTYPE_FLOAT64).putInt(inputSize).putInt(layerSizes.length);
+        for (int size : layerSizes) {
+            header.putInt(size);
+        }
+        header.position(0);
+        writeFully(channel, header);
+
+        ByteBuffer chunk = ByteBuffer.allocateDirect(WRITE_CHUNK * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        writeDoubles(channel, chunk, data);
+        if (optimizerName != null) {
+            byte[] name = optimizerName.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer section = ByteBuffer.allocate(optimizerSectionSize(name.length))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            section.putInt(name.length).put(name);
+            section.position(section.capacity() - Long.BYTES - 2 * Integer.BYTES);
+            section.putLong(step).putInt(state.length).putInt(0);
+            section.position(0);
+            writeFully(channel, section);
+            for (double[] buffer : state) {
+                writeDoubles(channel, chunk, buffer);
+            }
+        }
+    }
+
+    private static void writeDoubles(FileChannel channel, ByteBuffer chunk, double[] data) throws IOException {
+        for (int from = 0; from < data.length; from += WRITE_CHUNK) {
+            int length = Math.min(WRITE_CHUNK, data.length - from);
+            chunk.clear();
+            chunk.asDoubleBuffer().put(data, from, length);
+            chunk.limit(length * Double.BYTES);
+            writeFully(channel, chunk);
+        }
+    }
+
+    // Заголовок секции оптимизатора вместе с выравниванием имени, кратен 8 байтам
+    private static int optimizerSectionSize(int nameLength) {
+        return ((Integer.BYTES + nameLength + 7) & ~7) + Long.BYTES + 2 * Integer.BYTES;
+    }
+
+    // Восстанавливает номер шага и моменты, если файл содержит состояние оптимизатора с тем же именем.
+    // Возвращает false, если состояния нет или оно от другого оптимизатора.
+    public static boolean readOptimizerState(Path path, Optimizer optimizer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Header header = readHeader(buffer);
+            long weightsEnd = header.dataOffset + header.parameterCount() * Double.BYTES;
+            if (header.version == VERSION || buffer.remaining() == weightsEnd) {
+                return false;
+            }
+            int offset = (int) (header.dataOffset + header.parameterCount() * Double.BYTES);
+            int nameLength = buffer.getInt(offset);
+            byte[] name = new byte[nameLength];
+            buffer.position(offset + Integer.BYTES);
+            buffer.get(name);
+            if (!optimizer.name().equals(new String(name, StandardCharsets.UTF_8))) {
+                return false;
+            }
+
+            int stateOffset = offset + optimizerSectionSize(nameLength);
+            long step = buffer.getLong(stateOffset - Long.BYTES - 2 * Integer.BYTES);
+            int count = buffer.getInt(stateOffset - 2 * Integer.BYTES);
+            optimizer.initialize(WeightStorage.parameterCount(header.inputSize, header.layerSizes));
+            if (count != optimizer.state.length) {
+                throw new IOException("Optimizer state in " + path + " has " + count + " buffers, expected "
+                        + optimizer.state.length);
+            }
+            DoubleBuffer doubles = buffer.position(stateOffset).slice().order(ByteOrder.LITTLE_ENDIAN)
+                    .asDoubleBuffer();
+            for (double[] state : optimizer.state) {
+                copyParameters(doubles, header, state);
+            }
+            optimizer.setStep(step);
+            return true;
+        }
+    }
+
+    public static Header readHeader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readHeader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Проверяет заголовок и копирует веса в data; топология файла должна совпадать с ожидаемой
+    public static void read(Path path, int inputSize, int[] layerSizes, double[] data) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Header header = readHeader(buffer);
+            if (header.inputSize != inputSize || !Arrays.equals(header.layerSizes, layerSizes)) {
+                throw new IllegalArgumentException("Checkpoint " + path + " has topology " + header.inputSize + " -> "
+                        + Arrays.toString(header.layerSizes) + ", expected " + inputSize + " -> "
+                        + Arrays.toString(layerSizes));
+            }
+            copyParameters(weights(buffer, header), header, data);
+        }
+    }
+
+    // Копирует параметры в раскладку WeightStorage; в файлах без смещений они заполняются нулями
+    private static void copyParameters(DoubleBuffer source, Header header, double[] target) {
+        if (header.hasBiases()) {
+            source.get(target, 0, (int) header.parameterCount());
+            return;
+        }
+        int index = 0;
+        for (int l = 0; l < header.layerSizes.length; l++) {
+            int cols = header.layerSizes[l];
+            int matrixSize = (l == 0 ? header.inputSize : header.layerSizes[l - 1]) * cols;
+            source.get(target, index, matrixSize);
+            Arrays.fill(target, index + matrixSize, index + matrixSize + cols, 0);
+            index += matrixSize + cols;
+        }
+    }
+
+    // Веса как read-only DoubleBuffer поверх отображенного файла, без копирования в кучу.
+    // Раскладка - как в файле: до версии 3 без смещений, см. Header.hasBiases
+    public static DoubleBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return weights(buffer, readHeader(buffer));
+        }
+    }
+
+    private static Header readHeader(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 5 * Integer.BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a weights checkpoint");
+        }
+        int version = buffer.getInt(4);
+        if (version < VERSION || version > VERSION_ALIGNED) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        int dtype = buffer.getInt(8);
+        if (dtype != DTYPE_FLOAT64) {
+            throw new IOException("Unsupported checkpoint dtype " + dtype);
+        }
+        int inputSize = buffer.getInt(12);
+        int layerCount = buffer.getInt(16);
+        if (layerCount < 1 || buffer.remaining() < dataOffset(version, layerCount)) {
+            throw new IOException("Corrupted checkpoint header");
+        }
+        int[] layerSizes = new int[layerCount];
+        for (int l = 0; l < layerCount; l++) {
+            layerSizes[l] = buffer.getInt(20 + l * Integer.BYTES);
+        }
+
+        Header header = new Header(version, dtype, inputSize, layerSizes);
+        long weightsEnd = header.dataOffset + header.parameterCount() * Double.BYTES;
+        boolean weightsOnly = buffer.remaining() == weightsEnd;
+        boolean valid = version == VERSION ? weightsOnly
+                : version == VERSION_WITH_OPTIMIZER ? hasOptimizerSection(buffer, header, weightsEnd)
+                : weightsOnly || hasOptimizerSection(buffer, header, weightsEnd);
+        if (!valid) {
+            throw new IOException("Checkpoint size does not match its header");
+        }
+        return header;
+    }
+
+    private static boolean hasOptimizerSection(ByteBuffer buffer, Header header, long weightsEnd) {
+        if (buffer.remaining() < weightsEnd + Integer.BYTES) {
+            return false;
+        }
+        int nameLength = buffer.getInt((int) weightsEnd);
+        if (nameLength < 0 || buffer.remaining() < weightsEnd + optimizerSectionSize(nameLength)) {
+            return false;
+        }
+        long stateOffset = weightsEnd + optimizerSectionSize(nameLength);
+        int count = buffer.getInt((int) (stateOffset - 2 * Integer.BYTES));
+        return count >= 0 && buffer.remaining() == stateOffset + count * header.parameterCount() * Double.BYTES;
+    }
+
+    // Только веса: за ними может идти состояние оптимизатора
+    private static DoubleBuffer weights(ByteBuffer buffer, Header header) {
+        DoubleBuffer weights = buffer.position(header.dataOffset).slice().order(ByteOrder.LITTLE_ENDIAN)
+                .asDoubleBuffer();
+        weights.limit((int) header.parameterCount());
+        return weights.slice().asReadOnlyBuffer();
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package circuit;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Нейроэволюция весов SimpleNeuralNetwork для недифференцируемых целей, без чтения и записи файлов на каждое
+// изменение. Популяция - один плоский массив [populationSize * parameterCount] в раскладке WeightStorage,
+// следующее поколение собирается во втором таком же массиве. Каждое поколение: лучшие eliteCount особей
+// переходят без изменений, остальные - потомки турнирного отбора с равномерным скрещиванием и мутацией.
+// Мутация - правило loadWeightsFromFileAndModify: вес меняется с вероятностью mutationRate на долю
+// до ±mutationScale, но не меньше ±mutationScale по абсолютной величине, чтобы нулевые смещения тоже менялись.
+// Приспособленность считается параллельно, у каждого потока своя копия сети. Случайность каждой особи
+// зависит только от seed, номера поколения и индекса, поэтому результат не зависит от числа потоков.
+// Fitness должна быть детерминированной: у элиты она не пересчитывается.
+public class Neuroevolution implements AutoCloseable {
+
+    // Чем больше, тем лучше. Сеть принадлежит вызывающему потоку только на время вызова.
+    public interface Fitness {
+        double evaluate(SimpleNeuralNetwork network);
+    }
+
+    private final SimpleNeuralNetwork network;
+    private final Fitness fitness;
+    private final int populationSize;
+    private final int parameterCount;
+    private final long seed;
+    private final int parallelism;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<SimpleNeuralNetwork> evaluators;
+
+    private double[] population;
+    private double[] nextPopulation;
+    private double[] scores;
+    private double[] nextScores;
+    // Индексы особей по убыванию приспособленности
+    private final int[] ranking;
+
+    private double mutationRate = 0.05;
+    private double mutationScale = 0.05;
+    private double crossoverRate = 0.5;
+    private int eliteCount = 1;
+    private int tournamentSize = 3;
+
+    private int generation;
+    private final double[] bestWeights;
+    private double bestFitness = Double.NEGATIVE_INFINITY;
+
+    public Neuroevolution(SimpleNeuralNetwork network, int populationSize, Fitness fitness, long seed) {
+        this(network, populationSize, fitness, seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    public Neuroevolution(SimpleNeuralNetwork network, int populationSize, Fitness fitness, long seed,
+                          int parallelism) {
+        if (populationSize < 2) {
+            throw new IllegalArgumentException("Population must have at least 2 individuals");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.network = network;
+        this.fitness = fitness;
+        this.populationSize = populationSize;
+        this.parameterCount = network.parameterCount();
+        this.seed = seed;
+        this.parallelism = parallelism;
+        this.pool = new ForkJoinPool(parallelism);
+        List<Layer> layers = network.getLayers();
+        this.evaluators = ThreadLocal.withInitial(() -> new SimpleNeuralNetwork(layers, new Random(0)));
+        this.population = new double[populationSize * parameterCount];
+        this.nextPopulation = new double[populationSize * parameterCount];
+        this.scores = new double[populationSize];
+        this.nextScores = new double[populationSize];
+        this.ranking = new int[populationSize];
+        this.bestWeights = new double[parameterCount];
+    }
+
+    public Neuroevolution setMutation(double rate, double scale) {
+        if (rate < 0 || rate > 1 || scale < 0) {
+            throw new IllegalArgumentException("Mutation rate must be in [0, 1] and scale must not be negative");
+        }
+        this.mutationRate = rate;
+        this.mutationScale = scale;
+        return this;
+    }
+
+    public Neuroevolution setCrossoverRate(double crossoverRate) {
+        if (crossoverRate < 0 || crossoverRate > 1) {
+            throw new IllegalArgumentException("Crossover rate must be in [0, 1]");
+        }
+        this.crossoverRate = crossoverRate;
+        return this;
+    }
+
+    public Neuroevolution setEliteCount(int eliteCount) {
+        if (eliteCount < 0 || eliteCount >= populationSize) {
+            throw new IllegalArgumentException("Elite count must be in [0, populationSize)");
+        }
+        this.eliteCount = eliteCount;
+        return this;
+    }
+
+    public Neuroevolution setTournamentSize(int tournamentSize) {
+        if (tournamentSize < 1) {
+            throw new IllegalArgumentException("Tournament size must be positive");
+        }
+        this.tournamentSize = tournamentSize;
+        return this;
+    }
+
+    // Проводит generations поколений и возвращает лучшую приспособленность за все время.
+    // Первый вызов создает популяцию: особь 0 - текущие веса сети, остальные - их мутации.
+    public double evolve(int generations) {
+        if (generation == 0) {
+            double[] weights = network.getWeights().data();
+            run(0, populationSize, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    int offset = i * parameterCount;
+                    System.arraycopy(weights, 0, population, offset, parameterCount);
+                    if (i > 0) {
+                        mutate(population, offset, random(i));
+                    }
+                    scores[i] = evaluate(population, offset);
+                }
+            });
+            generation = 1;
+            rankAndRecord();
+        }
+
+        for (int g = 0; g < generations; g++) {
+            for (int e = 0; e < eliteCount; e++) {
+                System.arraycopy(population, ranking[e] * parameterCount, nextPopulation, e * parameterCount,
+                        parameterCount);
+                nextScores[e] = scores[ranking[e]];
+            }
+            run(eliteCount, populationSize, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    breed(i, random(i));
+                    nextScores[i] = evaluate(nextPopulation, i * parameterCount);
+                }
+            });
+
+            double[] swap = population;
+            population = nextPopulation;
+            nextPopulation = swap;
+            swap = scores;
+            scores = nextScores;
+            nextScores = swap;
+            generation++;
+            rankAndRecord();
+        }
+        return bestFitness;
+    }
+
+    private void breed(int child, SplittableRandom random) {
+        int offset = child * parameterCount;
+        int first = tournament(random) * parameterCount;
+        if (random.nextDouble() < crossoverRate) {
+            int second = tournament(random) * parameterCount;
+            for (int k = 0; k < parameterCount; k++) {
+                nextPopulation[offset + k] = population[(random.nextBoolean() ? first : second) + k];
+            }
+        } else {
+            System.arraycopy(population, first, nextPopulation, offset, parameterCount);
+        }
+        mutate(nextPopulation, offset, random);
+    }
+
+    private int tournament(SplittableRandom random) {
+        int best = random.nextInt(populationSize);
+        for (int t = 1; t < tournamentSize; t++) {
+            int candidate = random.nextInt(populationSize);
+            if (scores[candidate] > scores[best]) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private void mutate(double[] weights, int offset, SplittableRandom random) {
+        for (int k = offset; k < offset + parameterCount; k++) {
+            if (random.nextDouble() < mutationRate) {
+                weights[k] += (random.nextDouble() * 2 - 1) * mutationScale * Math.max(Math.abs(weights[k]), 1);
+            }
+        }
+    }
+
+    private SplittableRandom random(int individual) {
+        return new SplittableRandom(seed + (long) generation * populationSize + individual);
+    }
+
+    private double evaluate(double[] weights, int offset) {
+        SimpleNeuralNetwork evaluator = evaluators.get();
+        System.arraycopy(weights, offset, evaluator.getWeights().data(), 0, parameterCount);
+        evaluator.markWeightsChanged();
+        double score = fitness.evaluate(evaluator);
+        return Double.isNaN(score) ? Double.NEGATIVE_INFINITY : score;
+    }
+
+    private void rankAndRecord() {
+        Integer[] order = new Integer[populationSize];
+        for (int i = 0; i < populationSize; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        for (int i = 0; i < populationSize; i++) {
+            ranking[i] = order[i];
+        }
+        if (scores[ranking[0]] > bestFitness) {
+            bestFitness = scores[ranking[0]];
+            System.arraycopy(population, ranking[0] * parameterCount, bestWeights, 0, parameterCount);
+        }
+    }
+
+    private interface RangeTask {
+        void run(int from, int to);
+    }
+
+    private void run(int from, int to, RangeTask task) {
+        int length = to - from;
+        List<Callable<Void>> tasks = new ArrayList<>(parallelism);
+        for (int p = 0; p < parallelism; p++) {
+            final int partFrom = from + (int) ((long) length * p / parallelism);
+            final int partTo = from + (int) ((long) length * (p + 1) / parallelism);
+            tasks.add(() -> {
+                task.run(partFrom, partTo);
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Evolution interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Fitness evaluation failed", e.getCause());
+            }
+        }
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public double getBestFitness() {
+        return bestFitness;
+    }
+
+    public double[] getBestWeights() {
+        return bestWeights.clone();
+    }
+
+    // Переносит лучшую особь в исходную сеть, например перед saveWeightsToFile
+    public void copyBestTo(SimpleNeuralNetwork target) {
+        if (target.parameterCount() != parameterCount) {
+            throw new IllegalArgumentException("Network topology does not match");
+        }
+        System.arraycopy(bestWeights, 0, target.getWeights().data(), 0, parameterCount);
+        target.markWeightsChanged();
+    }
+
+    // На диск пишется только лучшая особь
+    public void saveBest(Path path) throws IOException {
+        ModelCheckpoint.write(path, network.getInputSize(), network.getLayerSizes(), bestWeights);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
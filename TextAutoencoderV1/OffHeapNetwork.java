@@ -0,0 +1,222 @@
+package circuit;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// Инференс полносвязной сети целиком вне кучи: веса в OffHeapStorage (например, отображенный чекпоинт),
+// выходы слоев - выровненные сегменты в Buffers. Buffers создает и закрывает вызывающий поток (например,
+// по одному на поток пула), поэтому память вне кучи не растет с числом потоков, которые пул заменил.
+// С Buffers на вызов в куче остаются только вход и выход predict(double[], Buffers), а
+// predict(MemorySegment, MemorySegment, Buffers) не выделяет ничего, так что узлу инференса
+// хватает маленькой кучи при любом размере модели.
+// Прямой проход - тот же, что у DenseLayer для одного входа: сумма строк матрицы, затем смещения,
+// затем активация; FMA на Vector API прямо по сегментам.
+// Нужны JDK 21, --enable-preview и --add-modules jdk.incubator.vector, как у OffHeapStorage и VectorKernels.
+// Сеть потокобезопасна, Buffers - нет; close можно вызывать только после завершения всех вызовов predict.
+public final class OffHeapNetwork implements AutoCloseable {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    // Активации принимают double[], поэтому выход слоя проходит через них кусками такого размера
+    private static final int TILE = 512;
+
+    private final OffHeapStorage weights;
+    private final boolean ownsWeights;
+    private final Activation[] activations;
+
+    // Вход и выходы слоев для одного потока: память в собственной confined-арене,
+    // освобождается в close. Использовать можно только в потоке, который вызвал newBuffers
+    public final class Buffers implements AutoCloseable {
+        private final Arena arena = Arena.ofConfined();
+        final MemorySegment input;
+        final MemorySegment[] outputs;
+        final double[] tile = new double[TILE];
+
+        private Buffers() {
+            try {
+                this.input = arena.allocate((long) weights.rows(0) * Double.BYTES, OffHeapStorage.ALIGNMENT);
+                this.outputs = new MemorySegment[weights.layerCount()];
+                for (int l = 0; l < outputs.length; l++) {
+                    outputs[l] = arena.allocate((long) weights.cols(l) * Double.BYTES, OffHeapStorage.ALIGNMENT);
+                }
+            } catch (RuntimeException e) {
+                arena.close();
+                throw e;
+            }
+        }
+
+        OffHeapNetwork network() {
+            return OffHeapNetwork.this;
+        }
+
+        @Override
+        public void close() {
+            arena.close();
+        }
+    }
+
+    public OffHeapNetwork(OffHeapStorage weights, Activation[] activations) {
+        this(weights, activations, false);
+    }
+
+    // Все слои с сигмоидой, как SimpleNeuralNetwork по умолчанию
+    public OffHeapNetwork(OffHeapStorage weights) {
+        this(weights, sigmoids(weights.layerCount()), false);
+    }
+
+    private OffHeapNetwork(OffHeapStorage weights, Activation[] activations, boolean ownsWeights) {
+        if (activations.length != weights.layerCount()) {
+            throw new IllegalArgumentException("Network has " + weights.layerCount() + " layers, got "
+                    + activations.length + " activations");
+        }
+        this.weights = weights;
+        this.activations = activations.clone();
+        this.ownsWeights = ownsWeights;
+    }
+
+    // Отображает чекпоинт версии 3 или 4; хранилище закрывается вместе с сетью
+    public static OffHeapNetwork map(Path path, Activation[] activations) throws IOException {
+        OffHeapStorage storage = OffHeapStorage.map(path);
+        try {
+            return new OffHeapNetwork(storage, activations == null ? sigmoids(storage.layerCount()) : activations,
+                    true);
+        } catch (RuntimeException e) {
+            storage.close();
+            throw e;
+        }
+    }
+
+    public static OffHeapNetwork map(Path path) throws IOException {
+        return map(path, null);
+    }
+
+    // Снимок весов и активаций обученной сети вне кучи
+    public static OffHeapNetwork copyOf(SimpleNeuralNetwork network) {
+        Activation[] activations = new Activation[network.getLayerSizes().length];
+        for (int l = 0; l < activations.length; l++) {
+            activations[l] = network.getActivation(l);
+        }
+        return new OffHeapNetwork(OffHeapStorage.copyOf(network.getWeights()), activations, true);
+    }
+
+    private static Activation[] sigmoids(int count) {
+        Activation[] activations = new Activation[count];
+        Arrays.fill(activations, Activation.SIGMOID);
+        return activations;
+    }
+
+    public int getInputSize() {
+        return weights.rows(0);
+    }
+
+    public int getOutputSize() {
+        return weights.cols(weights.layerCount() - 1);
+    }
+
+    public OffHeapStorage getWeights() {
+        return weights;
+    }
+
+    public Buffers newBuffers() {
+        return new Buffers();
+    }
+
+    // Выделяет и освобождает буферы на каждый вызов; в цикле инференса лучше predict(input, buffers)
+    public double[] predict(double[] input) {
+        try (Buffers b = newBuffers()) {
+            return predict(input, b);
+        }
+    }
+
+    public double[] predict(double[] input, Buffers b) {
+        if (input.length != getInputSize()) {
+            throw new IllegalArgumentException("Input must have " + getInputSize() + " elements");
+        }
+        checkBuffers(b);
+        MemorySegment.copy(input, 0, b.input, OffHeapStorage.DOUBLE, 0, input.length);
+        MemorySegment output = forward(b.input, b);
+        double[] result = new double[getOutputSize()];
+        MemorySegment.copy(output, OffHeapStorage.DOUBLE, 0, result, 0, result.length);
+        return result;
+    }
+
+    // Вход и выход - little-endian double по getInputSize() и getOutputSize() элементов
+    public void predict(MemorySegment input, MemorySegment output, Buffers b) {
+        if (input.byteSize() < (long) getInputSize() * Double.BYTES
+                || output.byteSize() < (long) getOutputSize() * Double.BYTES) {
+            throw new IllegalArgumentException("Input or output segment is too small");
+        }
+        checkBuffers(b);
+        MemorySegment.copy(forward(input, b), 0, output, 0, (long) getOutputSize() * Double.BYTES);
+    }
+
+    private void checkBuffers(Buffers b) {
+        if (b.network() != this) {
+            throw new IllegalArgumentException("Buffers belong to another network");
+        }
+    }
+
+    private MemorySegment forward(MemorySegment input, Buffers b) {
+        MemorySegment params = weights.segment();
+        MemorySegment currentInput = input;
+        for (int l = 0; l < weights.layerCount(); l++) {
+            int rows = weights.rows(l);
+            int cols = weights.cols(l);
+            MemorySegment output = b.outputs[l];
+            output.fill((byte) 0);
+            long row = weights.offset(l) * Double.BYTES;
+            for (int j = 0; j < rows; j++, row += (long) cols * Double.BYTES) {
+                double value = currentInput.getAtIndex(OffHeapStorage.DOUBLE, j);
+                // Нулевой вход ничего не добавляет: для битовых окон это большая часть строк
+                if (value != 0) {
+                    axpy(value, params, row, output, cols);
+                }
+            }
+            axpy(1, params, weights.biasOffset(l) * Double.BYTES, output, cols);
+            activate(activations[l], output, cols, b.tile);
+            currentInput = output;
+        }
+        return currentInput;
+    }
+
+    // y[0..length) += a * x[xOffset..], xOffset в байтах
+    private static void axpy(double a, MemorySegment x, long xOffset, MemorySegment y, int length) {
+        DoubleVector scale = DoubleVector.broadcast(DOUBLES, a);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            long offset = (long) i * Double.BYTES;
+            DoubleVector vx = DoubleVector.fromMemorySegment(DOUBLES, x, xOffset + offset, ORDER);
+            DoubleVector vy = DoubleVector.fromMemorySegment(DOUBLES, y, offset, ORDER);
+            vx.fma(scale, vy).intoMemorySegment(y, offset, ORDER);
+        }
+        for (; i < length; i++) {
+            double value = y.getAtIndex(OffHeapStorage.DOUBLE, i)
+                    + a * x.get(OffHeapStorage.DOUBLE, xOffset + (long) i * Double.BYTES);
+            y.setAtIndex(OffHeapStorage.DOUBLE, i, value);
+        }
+    }
+
+    private static void activate(Activation activation, MemorySegment values, int length, double[] tile) {
+        for (int from = 0; from < length; from += TILE) {
+            int count = Math.min(TILE, length - from);
+            long offset = (long) from * Double.BYTES;
+            MemorySegment.copy(values, OffHeapStorage.DOUBLE, offset, tile, 0, count);
+            activation.apply(tile, count);
+            MemorySegment.copy(tile, 0, values, OffHeapStorage.DOUBLE, offset, count);
+        }
+    }
+
+    // Buffers закрываются их владельцами
+    @Override
+    public void close() {
+        if (ownsWeights) {
+            weights.close();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package circuit;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Параметры сети вне кучи Java в раскладке WeightStorage, поверх MemorySegment (Foreign Function & Memory API).
+// Память либо выделяется в Arena с выравниванием ALIGNMENT под SIMD, либо это отображенный файл чекпоинта
+// версии 3 или 4 (в версии 4 веса тоже выровнены на ALIGNMENT, в версии 3 - только на 8 байт): веса
+// не копируются, несколько процессов делят страницы page cache, а размер не ограничен 2 ГБ, как у MappedByteBuffer.
+// Значения хранятся little-endian, как в файле.
+// Требует JDK 21 с --enable-preview (в JDK 22+ API стабилен); остальные классы от этого не зависят.
+// Память освобождается в close, после этого обращаться к хранилищу нельзя.
+public final class OffHeapStorage implements ParameterStorage, AutoCloseable {
+    static final long ALIGNMENT = ModelCheckpoint.DATA_ALIGNMENT;
+    static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final int[] rows;
+    private final int[] cols;
+    // Смещения в элементах double; long, потому что модель может быть больше Integer.MAX_VALUE параметров
+    private final long[] offsets;
+
+    private OffHeapStorage(Arena arena, MemorySegment segment, int inputSize, int[] layerSizes) {
+        this.arena = arena;
+        this.segment = segment;
+        this.rows = new int[layerSizes.length];
+        this.cols = new int[layerSizes.length];
+        this.offsets = new long[layerSizes.length];
+        long size = 0;
+        for (int l = 0; l < layerSizes.length; l++) {
+            rows[l] = l == 0 ? inputSize : layerSizes[l - 1];
+            cols[l] = layerSizes[l];
+            offsets[l] = size;
+            size += (long) rows[l] * cols[l] + cols[l];
+        }
+        if (segment.byteSize() < size * Double.BYTES) {
+            throw new IllegalArgumentException("Segment is too small for the topology");
+        }
+    }
+
+    public static OffHeapStorage allocate(int inputSize, int[] layerSizes) {
+        long size = 0;
+        for (int l = 0; l < layerSizes.length; l++) {
+            if (layerSizes[l] < 1) {
+                throw new IllegalArgumentException("Layer sizes must be positive");
+            }
+            size += (long) (l == 0 ? inputSize : layerSizes[l - 1]) * layerSizes[l] + layerSizes[l];
+        }
+        Arena arena = Arena.ofShared();
+        return new OffHeapStorage(arena, arena.allocate(size * Double.BYTES, ALIGNMENT), inputSize,
+                layerSizes.clone());
+    }
+
+    // Копия любых параметров вне кучи, например WeightStorage обученной сети
+    public static OffHeapStorage copyOf(ParameterStorage source) {
+        int[] layerSizes = new int[source.layerCount()];
+        for (int l = 0; l < layerSizes.length; l++) {
+            layerSizes[l] = source.cols(l);
+        }
+        OffHeapStorage storage = allocate(source.rows(0), layerSizes);
+        if (source instanceof WeightStorage weights) {
+            MemorySegment.copy(weights.data(), 0, storage.segment, DOUBLE, 0, weights.size());
+            return storage;
+        }
+        for (int l = 0; l < layerSizes.length; l++) {
+            for (int j = 0; j < storage.rows[l]; j++) {
+                for (int k = 0; k < layerSizes[l]; k++) {
+                    storage.set(l, j, k, source.get(l, j, k));
+                }
+            }
+            for (int k = 0; k < layerSizes[l]; k++) {
+                storage.segment.setAtIndex(DOUBLE, storage.biasOffset(l) + k, source.bias(l, k));
+            }
+        }
+        return storage;
+    }
+
+    // Отображает параметры чекпоинта версии 3 или 4 только для чтения; set на таком хранилище бросает исключение.
+    // Заголовок проверяется так же, как в ModelCheckpoint, секция оптимизатора после весов допускается.
+    public static OffHeapStorage map(Path path) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            ValueLayout.OfInt intLayout = ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+            if (file.byteSize() < 5 * Integer.BYTES || file.get(intLayout, 0) != ModelCheckpoint.MAGIC) {
+                throw new IOException("Not a weights checkpoint");
+            }
+            int version = file.get(intLayout, 4);
+            if (version != ModelCheckpoint.VERSION_WITH_BIASES && version != ModelCheckpoint.VERSION_ALIGNED) {
+                throw new IOException("Only version " + ModelCheckpoint.VERSION_WITH_BIASES + " and "
+                        + ModelCheckpoint.VERSION_ALIGNED + " checkpoints can be mapped, got " + version);
+            }
+            if (file.get(intLayout, 8) != ModelCheckpoint.DTYPE_FLOAT64) {
+                throw new IOException("Unsupported checkpoint dtype " + file.get(intLayout, 8));
+            }
+            int inputSize = file.get(intLayout, 12);
+            int layerCount = file.get(intLayout, 16);
+            if (inputSize < 1 || layerCount < 1 || file.byteSize() < ModelCheckpoint.dataOffset(version, layerCount)) {
+                throw new IOException("Corrupted checkpoint header");
+            }
+            int[] layerSizes = new int[layerCount];
+            for (int l = 0; l < layerCount; l++) {
+                layerSizes[l] = file.get(intLayout, 20 + l * Integer.BYTES);
+                if (layerSizes[l] < 1) {
+                    throw new IOException("Corrupted checkpoint header");
+                }
+            }
+            ModelCheckpoint.Header header = new ModelCheckpoint.Header(version, ModelCheckpoint.DTYPE_FLOAT64,
+                    inputSize, layerSizes);
+            long weightsEnd = header.dataOffset + header.parameterCount() * Double.BYTES;
+            if (file.byteSize() < weightsEnd) {
+                throw new IOException("Checkpoint size does not match its header");
+            }
+            return new OffHeapStorage(arena, file.asSlice(header.dataOffset, weightsEnd - header.dataOffset),
+                    inputSize, layerSizes);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int layerCount() {
+        return offsets.length;
+    }
+
+    @Override
+    public int rows(int layer) {
+        return rows[layer];
+    }
+
+    @Override
+    public int cols(int layer) {
+        return cols[layer];
+    }
+
+    public long offset(int layer) {
+        return offsets[layer];
+    }
+
+    public long biasOffset(int layer) {
+        return offsets[layer] + (long) rows[layer] * cols[layer];
+    }
+
+    // Число параметров всех слоев
+    public long size() {
+        int last = offsets.length - 1;
+        return biasOffset(last) + cols[last];
+    }
+
+    // Сырые параметры: смещение элемента i - i * Double.BYTES, порядок байт - DOUBLE
+    public MemorySegment segment() {
+        return segment;
+    }
+
+    @Override
+    public double get(int layer, int row, int col) {
+        return segment.getAtIndex(DOUBLE, offsets[layer] + (long) row * cols[layer] + col);
+    }
+
+    @Override
+    public void set(int layer, int row, int col, double value) {
+        segment.setAtIndex(DOUBLE, offsets[layer] + (long) row * cols[layer] + col, value);
+    }
+
+    @Override
+    public double bias(int layer, int col) {
+        return segment.getAtIndex(DOUBLE, biasOffset(layer) + col);
+    }
+
+    @Override
+    public void copyTo(double[] target) {
+        long size = size();
+        if (target.length < size) {
+            throw new IllegalArgumentException("Target must have at least " + size + " elements");
+        }
+        MemorySegment.copy(segment, DOUBLE, 0, target, 0, (int) size);
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
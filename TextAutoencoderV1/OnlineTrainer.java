@@ -0,0 +1,250 @@
+package circuit;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Непрерывное дообучение автоэнкодера на потоке новых примеров.
+// Примеры - упакованные биты (как DatasetSource и stringToPackedBits, старший бит байта - первый вход)
+// попадают в буфер воспроизведения ограниченного размера: один плоский byte[] на capacity примеров,
+// заполнение по reservoir sampling (алгоритм R), так что буфер - равномерная выборка из всего потока.
+// Фоновый поток берет из буфера случайный пример и обучает на нем сеть через trainBits с целью, равной входу,
+// не быстрее targetRate примеров в секунду.
+// Каждые publishInterval шагов поток снимает InferenceModel и публикует его одной volatile-записью:
+// predict и слушатели (например, InferenceServer::setModel) видят либо старый, либо новый снимок целиком,
+// обучение ради них не останавливается. Сеть принадлежит потоку обучения до close.
+public class OnlineTrainer implements AutoCloseable {
+    private static final long IDLE_NANOS = 1_000_000;
+    // Максимальный сон за раз, чтобы изменение targetRate и close срабатывали быстро
+    private static final long MAX_PARK_NANOS = 10_000_000;
+
+    private final SimpleNeuralNetwork network;
+    private final int sampleBytes;
+    private final int capacity;
+    private final byte[] samples;
+    private final SplittableRandom reservoirRandom;
+    private final SplittableRandom trainingRandom;
+    private final List<Consumer<InferenceModel>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+    private int size;
+    private long seen;
+    private volatile double targetRate = Double.POSITIVE_INFINITY;
+    private volatile double learningRate = 0.01;
+    private volatile int publishInterval = 1000;
+    private volatile InferenceModel snapshot;
+    private volatile long snapshotVersion;
+    private volatile long trained;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    public OnlineTrainer(SimpleNeuralNetwork network, int capacity, long seed) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Replay buffer capacity must be positive");
+        }
+        int[] layerSizes = network.getLayerSizes();
+        if (layerSizes[layerSizes.length - 1] != network.getInputSize()) {
+            throw new IllegalArgumentException("Online training needs an autoencoder: output size must match input size");
+        }
+        this.network = network;
+        this.sampleBytes = (network.getInputSize() + 7) / 8;
+        this.capacity = capacity;
+        this.samples = new byte[Math.multiplyExact(capacity, sampleBytes)];
+        this.reservoirRandom = new SplittableRandom(seed);
+        this.trainingRandom = new SplittableRandom(seed + 1);
+        this.snapshot = new InferenceModel(network);
+        this.thread = new Thread(this::run, "online-trainer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Double.POSITIVE_INFINITY - без ограничения; можно менять на ходу
+    public OnlineTrainer setTargetRate(double samplesPerSecond) {
+        if (!(samplesPerSecond > 0)) {
+            throw new IllegalArgumentException("Target rate must be positive");
+        }
+        this.targetRate = samplesPerSecond;
+        LockSupport.unpark(thread);
+        return this;
+    }
+
+    public OnlineTrainer setLearningRate(double learningRate) {
+        this.learningRate = learningRate;
+        return this;
+    }
+
+    public OnlineTrainer setPublishInterval(int steps) {
+        if (steps < 1) {
+            throw new IllegalArgumentException("Publish interval must be positive");
+        }
+        this.publishInterval = steps;
+        return this;
+    }
+
+    // Слушатель вызывается в потоке обучения сразу после публикации снимка
+    public OnlineTrainer addSnapshotListener(Consumer<InferenceModel> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    // Один пример: (inputSize + 7) / 8 байт
+    public void offer(byte[] bits) {
+        checkFailure();
+        if (bits.length != sampleBytes) {
+            throw new IllegalArgumentException("Sample must have " + sampleBytes + " bytes");
+        }
+        synchronized (samples) {
+            seen++;
+            int slot;
+            if (size < capacity) {
+                slot = size++;
+            } else {
+                long index = reservoirRandom.nextLong(seen);
+                if (index >= capacity) {
+                    return;
+                }
+                slot = (int) index;
+            }
+            System.arraycopy(bits, 0, samples, slot * sampleBytes, sampleBytes);
+        }
+    }
+
+    // Текст окнами Autoencoder.stringToPackedBits; сеть должна иметь DatasetSource.WINDOW_BITS входов
+    public void offerText(String text) {
+        if (sampleBytes != DatasetSource.WINDOW_BYTES) {
+            throw new IllegalArgumentException("Text windows need " + DatasetSource.WINDOW_BITS + " inputs");
+        }
+        for (byte[] window : Autoencoder.stringToPackedBits(text)) {
+            offer(window);
+        }
+    }
+
+    // Последний опубликованный снимок; не блокируется и не ждет обучения
+    public InferenceModel getSnapshot() {
+        return snapshot;
+    }
+
+    public double[] predict(double[] input) {
+        return snapshot.predict(input);
+    }
+
+    public long getSnapshotVersion() {
+        return snapshotVersion;
+    }
+
+    public long getTrainedCount() {
+        return trained;
+    }
+
+    public long getSeenCount() {
+        synchronized (samples) {
+            return seen;
+        }
+    }
+
+    public int getBufferSize() {
+        synchronized (samples) {
+            return size;
+        }
+    }
+
+    private void run() {
+        byte[] sample = new byte[sampleBytes];
+        double[] target = new double[network.getInputSize()];
+        // Отсчет темпа: шагов с periodStart; сбрасывается при смене темпа и простое без примеров
+        long periodStart = System.nanoTime();
+        long periodSteps = 0;
+        double periodRate = targetRate;
+        long sinceSnapshot = 0;
+        try {
+            while (!closed) {
+                double rate = targetRate;
+                if (rate != periodRate) {
+                    periodRate = rate;
+                    periodStart = System.nanoTime();
+                    periodSteps = 0;
+                }
+                if (!Double.isInfinite(rate)) {
+                    double allowed = (System.nanoTime() - periodStart) * rate / 1e9;
+                    if (periodSteps >= allowed) {
+                        long wait = (long) ((periodSteps + 1 - allowed) / rate * 1e9);
+                        LockSupport.parkNanos(Math.min(Math.max(wait, 1), MAX_PARK_NANOS));
+                        continue;
+                    }
+                }
+                if (!drawSample(sample)) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    periodStart = System.nanoTime();
+                    periodSteps = 0;
+                    continue;
+                }
+                for (int i = 0; i < target.length; i++) {
+                    target[i] = (sample[i >>> 3] >>> (7 - (i & 7))) & 1;
+                }
+                network.trainBits(sample, target, learningRate);
+                periodSteps++;
+                trained++;
+                if (++sinceSnapshot >= publishInterval) {
+                    publish();
+                    sinceSnapshot = 0;
+                }
+            }
+            if (sinceSnapshot > 0) {
+                publish();
+            }
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+    }
+
+    private boolean drawSample(byte[] sample) {
+        synchronized (samples) {
+            if (size == 0) {
+                return false;
+            }
+            int slot = trainingRandom.nextInt(size);
+            System.arraycopy(samples, slot * sampleBytes, sample, 0, sampleBytes);
+            return true;
+        }
+    }
+
+    // Снимок копирует веса, поэтому снимается только в потоке обучения между шагами
+    private void publish() {
+        InferenceModel model = new InferenceModel(network);
+        snapshot = model;
+        snapshotVersion++;
+        for (Consumer<InferenceModel> listener : listeners) {
+            listener.accept(model);
+        }
+    }
+
+    private void checkFailure() {
+        Throwable cause = failure;
+        if (cause != null) {
+            throw new IllegalStateException("Online training failed", cause);
+        }
+    }
+
+    // Останавливает обучение и публикует последние веса; после этого сетью снова можно пользоваться напрямую.
+    // Поток обучения останавливается после текущего шага, поэтому прерывание не отменяет ожидание,
+    // а восстанавливается после него: иначе сеть могла бы меняться уже после close
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+}
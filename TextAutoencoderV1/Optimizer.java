@@ -0,0 +1,266 @@
+package circuit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Правило обновления весов. Градиент передается как направление спуска (target - output) * input,
+// в той же знаковой конвенции, что и раньше: веса двигаются на +learningRate * шаг.
+// Каждое правило - один проход по весам и своим буферам моментов без выделения памяти.
+// Экземпляр хранит состояние (моменты, номер шага), поэтому привязывается к одной сети.
+public abstract class Optimizer {
+    private final AtomicLong step = new AtomicLong();
+    double[][] state = new double[0][];
+
+    public static Optimizer sgd() {
+        return new Sgd();
+    }
+
+    public static Optimizer momentum(double momentum) {
+        return new Momentum(momentum, false);
+    }
+
+    public static Optimizer nesterov(double momentum) {
+        return new Momentum(momentum, true);
+    }
+
+    public static Optimizer rmsProp() {
+        return rmsProp(0.9, 1e-8);
+    }
+
+    public static Optimizer rmsProp(double decay, double epsilon) {
+        return new RmsProp(decay, epsilon);
+    }
+
+    public static Optimizer adam() {
+        return adam(0.9, 0.999, 1e-8);
+    }
+
+    public static Optimizer adam(double beta1, double beta2, double epsilon) {
+        return new Adam(beta1, beta2, epsilon);
+    }
+
+    // Имя пишется в чекпоинт, состояние восстанавливается только в оптимизатор с тем же именем
+    public abstract String name();
+
+    abstract int stateCount();
+
+    // weights[offset + k] обновляется по градиенту a * g[gOffset + k], k < length
+    abstract void update(double[] weights, int offset, double a, double[] g, int gOffset, int length,
+                         double learningRate);
+
+    // Обновление по внешнему произведению input x delta: строка j получает градиент input[j] * delta.
+    // Нулевые входы тоже проходят через update - моменты должны затухать и на нулевом градиенте.
+    void updateOuterProduct(double[] weights, int offset, double[] input, int rows, double[] delta, int cols,
+                            double learningRate) {
+        for (int j = 0, row = offset; j < rows; j++, row += cols) {
+            update(weights, row, input[j], delta, 0, cols, learningRate);
+        }
+    }
+
+    // true, если нулевой градиент не меняет ни весов, ни состояния - тогда такие строки можно пропускать
+    boolean skipsZeroGradients() {
+        return false;
+    }
+
+    void initialize(int parameterCount) {
+        if (state.length != stateCount() || (state.length > 0 && state[0].length != parameterCount)) {
+            state = new double[stateCount()][parameterCount];
+        }
+    }
+
+    // Начало очередного шага обновления; возвращает его номер, начиная с 1
+    long nextStep() {
+        long t = step.incrementAndGet();
+        onStep(t);
+        return t;
+    }
+
+    void onStep(long t) {
+    }
+
+    public long getStep() {
+        return step.get();
+    }
+
+    void setStep(long t) {
+        step.set(t);
+        onStep(Math.max(t, 1));
+    }
+
+    @Override
+    public String toString() {
+        return name();
+    }
+
+    private static final class Sgd extends Optimizer {
+        private final Kernels kernels = Kernels.get();
+
+        @Override
+        public String name() {
+            return "sgd";
+        }
+
+        @Override
+        int stateCount() {
+            return 0;
+        }
+
+        @Override
+        void update(double[] weights, int offset, double a, double[] g, int gOffset, int length,
+                    double learningRate) {
+            if (a != 0) {
+                kernels.axpy(learningRate * a, g, gOffset, weights, offset, length);
+            }
+        }
+
+        @Override
+        void updateOuterProduct(double[] weights, int offset, double[] input, int rows, double[] delta, int cols,
+                                double learningRate) {
+            kernels.addOuterProduct(weights, offset, input, rows, delta, cols, learningRate);
+        }
+
+        @Override
+        boolean skipsZeroGradients() {
+            return true;
+        }
+    }
+
+    // v = mu * v + g; классический вариант w += lr * v, Нестерова - w += lr * (g + mu * v)
+    private static final class Momentum extends Optimizer {
+        private final double momentum;
+        private final boolean nesterov;
+
+        Momentum(double momentum, boolean nesterov) {
+            if (momentum < 0 || momentum >= 1) {
+                throw new IllegalArgumentException("Momentum must be in [0, 1)");
+            }
+            this.momentum = momentum;
+            this.nesterov = nesterov;
+        }
+
+        @Override
+        public String name() {
+            return nesterov ? "nesterov" : "momentum";
+        }
+
+        @Override
+        int stateCount() {
+            return 1;
+        }
+
+        @Override
+        void update(double[] weights, int offset, double a, double[] g, int gOffset, int length,
+                    double learningRate) {
+            double[] velocity = state[0];
+            double mu = momentum;
+            if (nesterov) {
+                for (int k = 0; k < length; k++) {
+                    int i = offset + k;
+                    double grad = a * g[gOffset + k];
+                    double v = mu * velocity[i] + grad;
+                    velocity[i] = v;
+                    weights[i] += learningRate * (grad + mu * v);
+                }
+            } else {
+                for (int k = 0; k < length; k++) {
+                    int i = offset + k;
+                    double v = mu * velocity[i] + a * g[gOffset + k];
+                    velocity[i] = v;
+                    weights[i] += learningRate * v;
+                }
+            }
+        }
+    }
+
+    // s = decay * s + (1 - decay) * g^2; w += lr * g / (sqrt(s) + eps)
+    private static final class RmsProp extends Optimizer {
+        private final double decay;
+        private final double epsilon;
+
+        RmsProp(double decay, double epsilon) {
+            if (decay < 0 || decay >= 1 || epsilon <= 0) {
+                throw new IllegalArgumentException("Decay must be in [0, 1) and epsilon must be positive");
+            }
+            this.decay = decay;
+            this.epsilon = epsilon;
+        }
+
+        @Override
+        public String name() {
+            return "rmsprop";
+        }
+
+        @Override
+        int stateCount() {
+            return 1;
+        }
+
+        @Override
+        void update(double[] weights, int offset, double a, double[] g, int gOffset, int length,
+                    double learningRate) {
+            double[] squares = state[0];
+            double keep = decay;
+            double mix = 1 - decay;
+            for (int k = 0; k < length; k++) {
+                int i = offset + k;
+                double grad = a * g[gOffset + k];
+                double s = keep * squares[i] + mix * grad * grad;
+                squares[i] = s;
+                weights[i] += learningRate * grad / (Math.sqrt(s) + epsilon);
+            }
+        }
+    }
+
+    // Adam с поправкой смещения моментов: поправки считаются один раз на шаг в onStep
+    private static final class Adam extends Optimizer {
+        private final double beta1;
+        private final double beta2;
+        private final double epsilon;
+        private volatile double correction1 = 1;
+        private volatile double correction2 = 1;
+
+        Adam(double beta1, double beta2, double epsilon) {
+            if (beta1 < 0 || beta1 >= 1 || beta2 < 0 || beta2 >= 1 || epsilon <= 0) {
+                throw new IllegalArgumentException("Betas must be in [0, 1) and epsilon must be positive");
+            }
+            this.beta1 = beta1;
+            this.beta2 = beta2;
+            this.epsilon = epsilon;
+        }
+
+        @Override
+        public String name() {
+            return "adam";
+        }
+
+        @Override
+        int stateCount() {
+            return 2;
+        }
+
+        @Override
+        void onStep(long t) {
+            correction1 = 1 / (1 - Math.pow(beta1, t));
+            correction2 = 1 / (1 - Math.pow(beta2, t));
+        }
+
+        @Override
+        void update(double[] weights, int offset, double a, double[] g, int gOffset, int length,
+                    double learningRate) {
+            double[] first = state[0];
+            double[] second = state[1];
+            double b1 = beta1;
+            double b2 = beta2;
+            double c1 = correction1;
+            double c2 = correction2;
+            for (int k = 0; k < length; k++) {
+                int i = offset + k;
+                double grad = a * g[gOffset + k];
+                double m = b1 * first[i] + (1 - b1) * grad;
+                double v = b2 * second[i] + (1 - b2) * grad * grad;
+                first[i] = m;
+                second[i] = v;
+                weights[i] += learningRate * m * c1 / (Math.sqrt(v * c2) + epsilon);
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Параллельное обучение SimpleNeuralNetwork на постоянном ForkJoinPool.
+// DATA_PARALLEL: батч делится на parallelism частей, каждая часть считает градиент в свой буфер,
+// затем буферы суммируются в фиксированном порядке - результат не зависит от планирования потоков.
+// HOGWILD: потоки обновляют общие веса без синхронизации (асинхронный SGD), включается только явно.
+public class ParallelTrainer implements AutoCloseable {
+
+    public enum Mode {
+        DATA_PARALLEL,
+        HOGWILD
+    }
+
+    private final SimpleNeuralNetwork network;
+    private final int parallelism;
+    private final Mode mode;
+    private final ForkJoinPool pool;
+    private final double[][] accumulators;
+    // Суммы квадратов градиента по отрезкам весов, считаются только при подключенных метриках
+    private final double[] gradientSquares;
+    private volatile TrainingMetrics metrics;
+
+    public ParallelTrainer(SimpleNeuralNetwork network) {
+        this(network, Runtime.getRuntime().availableProcessors(), Mode.DATA_PARALLEL);
+    }
+
+    public ParallelTrainer(SimpleNeuralNetwork network, int parallelism, Mode mode) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.network = network;
+        this.parallelism = parallelism;
+        this.mode = mode;
+        this.pool = new ForkJoinPool(parallelism);
+        this.accumulators = mode == Mode.DATA_PARALLEL ? new double[parallelism][network.parameterCount()] : null;
+        this.gradientSquares = new double[parallelism];
+    }
+
+    // Подключает сбор метрик к тренеру и сети; null отключает
+    public void setMetrics(TrainingMetrics metrics) {
+        this.metrics = metrics;
+        network.setMetrics(metrics);
+    }
+
+    public TrainingMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void trainEpoch(double[][] inputs, double[][] targetOutputs, int batchSize, double learningRate) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (mode == Mode.HOGWILD) {
+            runPartitioned(0, inputs.length, (from, to, part) -> {
+                for (int s = from; s < to; s++) {
+                    network.train(inputs[s], targetOutputs[s], learningRate);
+                }
+            });
+            TrainingMetrics metrics = this.metrics;
+            if (metrics != null) {
+                metrics.addSteps(inputs.length, inputs.length);
+            }
+            return;
+        }
+        for (int from = 0; from < inputs.length; from += batchSize) {
+            trainRange(from, Math.min(from + batchSize, inputs.length), learningRate,
+                    (partFrom, partTo, gradient) ->
+                            network.accumulateGradient(inputs, targetOutputs, partFrom, partTo, gradient));
+        }
+    }
+
+    public void trainBatch(double[][] inputs, double[][] targetOutputs, double learningRate) {
+        if (inputs.length != targetOutputs.length) {
+            throw new IllegalArgumentException("Number of inputs must match number of target outputs");
+        }
+        if (mode == Mode.HOGWILD) {
+            trainEpoch(inputs, targetOutputs, inputs.length, learningRate);
+            return;
+        }
+        trainRange(0, inputs.length, learningRate,
+                (from, to, gradient) -> network.accumulateGradient(inputs, targetOutputs, from, to, gradient));
+    }
+
+    // Батч упакованных окон автоэнкодера, см. SimpleNeuralNetwork.trainBatchBits
+    public void trainBatchBits(byte[][] bits, double learningRate) {
+        if (mode == Mode.HOGWILD) {
+            runPartitioned(0, bits.length, (from, to, part) -> {
+                double[] target = new double[network.getInputSize()];
+                for (int s = from; s < to; s++) {
+                    for (int i = 0; i < target.length; i++) {
+                        target[i] = (bits[s][i >>> 3] >>> (7 - (i & 7))) & 1;
+                    }
+                    network.trainBits(bits[s], target, learningRate);
+                }
+            });
+            TrainingMetrics metrics = this.metrics;
+            if (metrics != null) {
+                metrics.addSteps(bits.length, bits.length);
+            }
+            return;
+        }
+        trainRange(0, bits.length, learningRate,
+                (from, to, gradient) -> network.accumulateGradientBits(bits, from, to, gradient));
+    }
+
+    private interface GradientTask {
+        void accumulate(int from, int to, double[] gradient);
+    }
+
+    private void trainRange(int from, int to, double learningRate, GradientTask task) {
+        if (to <= from) {
+            return;
+        }
+        runPartitioned(from, to, (partFrom, partTo, part) -> {
+            double[] accumulator = accumulators[part];
+            Arrays.fill(accumulator, 0);
+            if (partTo > partFrom) {
+                task.accumulate(partFrom, partTo, accumulator);
+            }
+        });
+        TrainingMetrics metrics = this.metrics;
+        long start = System.nanoTime();
+        reduceAndApply(1.0 / (to - from), network.beginUpdate(learningRate), metrics != null);
+        if (metrics != null) {
+            metrics.addPhase(TrainingMetrics.Phase.UPDATE, System.nanoTime() - start);
+            double squares = 0;
+            for (double partial : gradientSquares) {
+                squares += partial;
+            }
+            metrics.addGradientNorm(Math.sqrt(squares) / (to - from));
+            metrics.addSteps(1, to - from);
+        }
+    }
+
+    // Каждый поток суммирует свой отрезок весов по всем буферам в порядке 0..parallelism-1
+    private void reduceAndApply(double gradientScale, double learningRate, boolean measureNorm) {
+        int size = accumulators[0].length;
+        runPartitioned(0, size, (from, to, part) -> {
+            double[] sum = accumulators[0];
+            for (int p = 1; p < parallelism; p++) {
+                double[] accumulator = accumulators[p];
+                for (int i = from; i < to; i++) {
+                    sum[i] += accumulator[i];
+                }
+            }
+            if (measureNorm) {
+                double squares = 0;
+                for (int i = from; i < to; i++) {
+                    squares += sum[i] * sum[i];
+                }
+                gradientSquares[part] = squares;
+            }
+            network.applyGradient(sum, gradientScale, learningRate, from, to);
+        });
+    }
+
+    private interface RangeTask {
+        void run(int from, int to, int part);
+    }
+
+    private void runPartitioned(int from, int to, RangeTask task) {
+        int length = to - from;
+        List<Callable<Void>> tasks = new ArrayList<>(parallelism);
+        for (int p = 0; p < parallelism; p++) {
+            final int part = p;
+            final int partFrom = from + (int) ((long) length * p / parallelism);
+            final int partTo = from + (int) ((long) length * (p + 1) / parallelism);
+            tasks.add(() -> {
+                task.run(partFrom, partTo, part);
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Training interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Training task failed", e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,22 @@
+package circuit;
+
+// Общая раскладка параметров сети: для каждого слоя row-major матрица [rows][cols], за ней cols смещений.
+// Реализации: WeightStorage (double[] в куче, на нем идет обучение) и OffHeapStorage (память вне кучи,
+// в том числе отображенный файл чекпоинта).
+public interface ParameterStorage {
+
+    int layerCount();
+
+    int rows(int layer);
+
+    int cols(int layer);
+
+    double get(int layer, int row, int col);
+
+    void set(int layer, int row, int col, double value);
+
+    double bias(int layer, int col);
+
+    // Все параметры подряд в раскладке WeightStorage.data()
+    void copyTo(double[] target);
+}
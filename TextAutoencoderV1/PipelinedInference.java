@@ -0,0 +1,331 @@
+package circuit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Конвейерный инференс снимка InferenceModel: слои делятся на последовательные стадии примерно равной
+// стоимости (по числу параметров), у каждой стадии свой поток и свой Workspace. Стадии связаны
+// ограниченными lock-free очередями с одним писателем и одним читателем, поэтому пока стадия 1 считает
+// пакет k, стадия 0 уже считает пакет k + 1, и при потоковой подаче заняты все ядра стадий.
+// Пакет - до microBatch входов подряд, внутри стадии он идет через блочное умножение матриц.
+// Порядок результатов совпадает с порядком входов. predictAll синхронизирован: поток подачи один.
+public class PipelinedInference implements AutoCloseable {
+    private static final int SPINS = 128;
+    private static final int YIELDS = 256;
+    // Сон ждет сигнала другой стороны очереди; предел - только страховка, простаивающий поток просыпается
+    // не чаще 10 раз в секунду
+    private static final long MAX_PARK_NANOS = 100_000_000;
+
+    private final InferenceModel model;
+    private final int microBatch;
+    // stageStarts[s] - первый слой стадии s, stageStarts[stageCount] - число слоев
+    private final int[] stageStarts;
+    // queues[s] - вход стадии s, последняя очередь - готовые результаты
+    private final RingBuffer[] queues;
+    private final Thread[] threads;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    private static final class Packet {
+        double[] data;
+        final int count;
+
+        Packet(double[] data, int count) {
+            this.data = data;
+            this.count = count;
+        }
+    }
+
+    // Кольцевой буфер на степени двойки для ровно одного писателя и одного читателя.
+    // Элемент публикуется volatile-записью tail, слот освобождается volatile-записью head; после нее сторона
+    // читает поле ждущего потока другой стороны и будит его. Уснувший поток сначала записывает себя в это поле,
+    // потом перепроверяет очередь, поэтому сигнал не теряется.
+    private static final class RingBuffer {
+        private final AtomicReferenceArray<Packet> slots;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+        // Копии чужого счетчика, чтобы не читать volatile на каждой операции
+        private long cachedHead;
+        private long cachedTail;
+        // Читатель, уснувший без данных, и писатель, уснувший без места
+        volatile Thread waitingReader;
+        volatile Thread waitingWriter;
+
+        RingBuffer(int capacity) {
+            int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+            this.slots = new AtomicReferenceArray<>(size);
+            this.mask = size - 1;
+        }
+
+        boolean offer(Packet packet) {
+            long t = tail.get();
+            if (t - cachedHead > mask) {
+                cachedHead = head.get();
+                if (t - cachedHead > mask) {
+                    return false;
+                }
+            }
+            slots.lazySet((int) t & mask, packet);
+            tail.set(t + 1);
+            wake(waitingReader);
+            return true;
+        }
+
+        Packet poll() {
+            long h = head.get();
+            if (h >= cachedTail) {
+                cachedTail = tail.get();
+                if (h >= cachedTail) {
+                    return null;
+                }
+            }
+            int index = (int) h & mask;
+            Packet packet = slots.get(index);
+            slots.lazySet(index, null);
+            head.set(h + 1);
+            wake(waitingWriter);
+            return packet;
+        }
+
+        boolean isEmpty() {
+            return head.get() >= tail.get();
+        }
+
+        boolean isFull() {
+            return tail.get() - head.get() > mask;
+        }
+
+        void wakeAll() {
+            wake(waitingReader);
+            wake(waitingWriter);
+        }
+
+        private static void wake(Thread thread) {
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    public PipelinedInference(InferenceModel model, int stageCount, int queueCapacity, int microBatch) {
+        Layer[] layers = model.layers();
+        if (stageCount < 1 || queueCapacity < 1 || microBatch < 1) {
+            throw new IllegalArgumentException("Stage count, queue capacity and micro-batch must be positive");
+        }
+        this.model = model;
+        this.microBatch = microBatch;
+        this.stageStarts = partition(layers, Math.min(stageCount, layers.length));
+        int stages = stageStarts.length - 1;
+        this.queues = new RingBuffer[stages + 1];
+        for (int s = 0; s <= stages; s++) {
+            queues[s] = new RingBuffer(queueCapacity);
+        }
+        this.threads = new Thread[stages];
+        for (int s = 0; s < stages; s++) {
+            int stage = s;
+            threads[s] = new Thread(() -> runStage(stage), "pipeline-stage-" + s);
+            threads[s].setDaemon(true);
+            threads[s].start();
+        }
+    }
+
+    // По умолчанию - стадия на каждое ядро, но не больше, чем слоев
+    public PipelinedInference(InferenceModel model) {
+        this(model, Runtime.getRuntime().availableProcessors(), 64, 8);
+    }
+
+    // Жадно режет слои на отрезки с суммарной стоимостью около total / stages.
+    // Слой без параметров (активация, dropout) стоит как число его выходов.
+    private static int[] partition(Layer[] layers, int stages) {
+        long[] costs = new long[layers.length];
+        long total = 0;
+        for (int i = 0; i < layers.length; i++) {
+            costs[i] = Math.max(layers[i].parameterCount(), layers[i].outputSize());
+            total += costs[i];
+        }
+        int[] starts = new int[stages + 1];
+        int stage = 1;
+        long accumulated = 0;
+        for (int i = 0; i < layers.length && stage < stages; i++) {
+            accumulated += costs[i];
+            // Каждой оставшейся стадии должен достаться хотя бы один слой
+            if (accumulated * stages >= total * stage || layers.length - 1 - i == stages - stage) {
+                starts[stage++] = i + 1;
+            }
+        }
+        starts[stages] = layers.length;
+        return starts;
+    }
+
+    public int getStageCount() {
+        return threads.length;
+    }
+
+    // Первый слой каждой стадии, для отладки балансировки
+    public int[] getStageStarts() {
+        return stageStarts.clone();
+    }
+
+    public InferenceModel getModel() {
+        return model;
+    }
+
+    // Подает входы в конвейер пакетами по microBatch и одновременно забирает готовые результаты
+    public synchronized double[][] predictAll(double[][] inputs) {
+        if (closed) {
+            throw new IllegalStateException("Pipeline is closed");
+        }
+        checkFailure();
+        int inputSize = model.getInputSize();
+        int outputSize = model.getOutputSize();
+        for (int i = 0; i < inputs.length; i++) {
+            if (inputs[i].length != inputSize) {
+                throw new IllegalArgumentException("Row " + i + " must have " + inputSize + " elements");
+            }
+        }
+
+        double[][] results = new double[inputs.length][];
+        RingBuffer first = queues[0];
+        RingBuffer last = queues[queues.length - 1];
+        int submitted = 0;
+        int received = 0;
+        int idle = 0;
+        Packet pending = null;
+        while (received < inputs.length) {
+            boolean progress = false;
+            if (pending == null && submitted < inputs.length) {
+                int count = Math.min(microBatch, inputs.length - submitted);
+                double[] data = new double[count * inputSize];
+                for (int s = 0; s < count; s++) {
+                    System.arraycopy(inputs[submitted + s], 0, data, s * inputSize, inputSize);
+                }
+                pending = new Packet(data, count);
+            }
+            if (pending != null && first.offer(pending)) {
+                submitted += pending.count;
+                pending = null;
+                progress = true;
+            }
+            Packet packet = last.poll();
+            if (packet != null) {
+                for (int s = 0; s < packet.count; s++) {
+                    double[] row = new double[outputSize];
+                    System.arraycopy(packet.data, s * outputSize, row, 0, outputSize);
+                    results[received++] = row;
+                }
+                progress = true;
+            }
+            if (progress) {
+                idle = 0;
+            } else {
+                checkFailure();
+                if (closed) {
+                    throw new IllegalStateException("Pipeline is closed");
+                }
+                idle = idle(idle, last, pending != null ? first : null);
+            }
+        }
+        return results;
+    }
+
+    private void runStage(int stage) {
+        Layer[] layers = model.layers();
+        double[] params = model.parameters();
+        int from = stageStarts[stage];
+        int to = stageStarts[stage + 1];
+        Workspace workspace = new Workspace(model.getInputSize(), layers);
+        RingBuffer in = queues[stage];
+        RingBuffer out = queues[stage + 1];
+        int idle = 0;
+        try {
+            while (!closed) {
+                Packet packet = in.poll();
+                if (packet == null) {
+                    idle = idle(idle, in, null);
+                    continue;
+                }
+                idle = 0;
+                workspace.ensureBatchCapacity(packet.count);
+                double[] currentInput = packet.data;
+                for (int i = from; i < to; i++) {
+                    // Выход последнего слоя стадии уходит дальше, поэтому он в новом массиве, а не в буфере стадии
+                    double[] output = i == to - 1
+                            ? new double[packet.count * layers[i].outputSize()]
+                            : workspace.batchOutputs[i];
+                    layers[i].forward(params, model.parameterOffset(i), currentInput, output, packet.count, false,
+                            workspace, i);
+                    currentInput = output;
+                }
+                packet.data = currentInput;
+                while (!out.offer(packet)) {
+                    if (closed) {
+                        return;
+                    }
+                    idle = idle(idle, null, out);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            wakeAll();
+        }
+    }
+
+    // Сначала короткое ожидание в цикле, затем уступка процессора, затем сон, пока в awaitData не появятся
+    // данные или в awaitSpace - место (null - не ждать). Простаивающие стадии не занимают ядра
+    private int idle(int count, RingBuffer awaitData, RingBuffer awaitSpace) {
+        if (count < SPINS) {
+            Thread.onSpinWait();
+        } else if (count < YIELDS) {
+            Thread.yield();
+        } else {
+            Thread current = Thread.currentThread();
+            if (awaitData != null) {
+                awaitData.waitingReader = current;
+            }
+            if (awaitSpace != null) {
+                awaitSpace.waitingWriter = current;
+            }
+            if ((awaitData == null || awaitData.isEmpty()) && (awaitSpace == null || awaitSpace.isFull())
+                    && !closed && failure == null) {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+            if (awaitData != null) {
+                awaitData.waitingReader = null;
+            }
+            if (awaitSpace != null) {
+                awaitSpace.waitingWriter = null;
+            }
+        }
+        return count + 1;
+    }
+
+    private void wakeAll() {
+        for (RingBuffer queue : queues) {
+            queue.wakeAll();
+        }
+    }
+
+    private void checkFailure() {
+        Throwable cause = failure;
+        if (cause != null) {
+            throw new IllegalStateException("Pipeline stage failed", cause);
+        }
+    }
+
+    // Останавливает стадии; если вызывающий поток прерван, флаг прерывания сохраняется, а стадии
+    // завершаются сами после текущего пакета
+    @Override
+    public void close() {
+        closed = true;
+        wakeAll();
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package circuit;
+
+// Отчет о потере точности float32 и int8 моделей относительно исходной double-сети на наборе данных.
+// Ошибка - MSE относительно целевых выходов, отклонение - |выход модели - выход double-сети|,
+// flips - доля выходов, у которых порог 0.5 дает другой бит, чем у double-сети.
+public class PrecisionReport {
+    public final double doubleError;
+    public final double floatError;
+    public final double int8Error;
+    public final double floatMaxDeviation;
+    public final double int8MaxDeviation;
+    public final double floatFlipRate;
+    public final double int8FlipRate;
+
+    private PrecisionReport(double doubleError, double floatError, double int8Error, double floatMaxDeviation,
+                            double int8MaxDeviation, double floatFlipRate, double int8FlipRate) {
+        this.doubleError = doubleError;
+        this.floatError = floatError;
+        this.int8Error = int8Error;
+        this.floatMaxDeviation = floatMaxDeviation;
+        this.int8MaxDeviation = int8MaxDeviation;
+        this.floatFlipRate = floatFlipRate;
+        this.int8FlipRate = int8FlipRate;
+    }
+
+    public static PrecisionReport compare(SimpleNeuralNetwork network, double[][] inputs, double[][] targetOutputs) {
+        return compare(network, new FloatNetwork(network), new QuantizedNetwork(network), inputs, targetOutputs);
+    }
+
+    public static PrecisionReport compare(SimpleNeuralNetwork network, FloatNetwork floatNetwork,
+                                          QuantizedNetwork quantizedNetwork, double[][] inputs,
+                                          double[][] targetOutputs) {
+        if (inputs.length != targetOutputs.length || inputs.length == 0) {
+            throw new IllegalArgumentException("Dataset must be non-empty and inputs must match target outputs");
+        }
+
+        double doubleError = 0, floatError = 0, int8Error = 0;
+        double floatMax = 0, int8Max = 0;
+        long floatFlips = 0, int8Flips = 0, outputs = 0;
+
+        for (int s = 0; s < inputs.length; s++) {
+            float[] input = toFloat(inputs[s]);
+            double[] expected = network.predict(inputs[s]);
+            float[] floatOutput = floatNetwork.predict(input);
+            float[] int8Output = quantizedNetwork.predict(input);
+            double[] target = targetOutputs[s];
+
+            for (int j = 0; j < expected.length; j++) {
+                doubleError += square(target[j] - expected[j]);
+                floatError += square(target[j] - floatOutput[j]);
+                int8Error += square(target[j] - int8Output[j]);
+                floatMax = Math.max(floatMax, Math.abs(floatOutput[j] - expected[j]));
+                int8Max = Math.max(int8Max, Math.abs(int8Output[j] - expected[j]));
+                if ((floatOutput[j] >= 0.5) != (expected[j] >= 0.5)) {
+                    floatFlips++;
+                }
+                if ((int8Output[j] >= 0.5) != (expected[j] >= 0.5)) {
+                    int8Flips++;
+                }
+            }
+            outputs += expected.length;
+        }
+
+        return new PrecisionReport(doubleError / outputs, floatError / outputs, int8Error / outputs, floatMax,
+                int8Max, (double) floatFlips / outputs, (double) int8Flips / outputs);
+    }
+
+    public static float[] toFloat(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("float64: MSE %.6f%n"
+                        + "float32: MSE %.6f (%+.6f), max deviation %.2e, flipped bits %.4f%%%n"
+                        + "int8:    MSE %.6f (%+.6f), max deviation %.2e, flipped bits %.4f%%",
+                doubleError,
+                floatError, floatError - doubleError, floatMaxDeviation, floatFlipRate * 100,
+                int8Error, int8Error - doubleError, int8MaxDeviation, int8FlipRate * 100);
+    }
+}
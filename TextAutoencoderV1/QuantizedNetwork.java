@@ -0,0 +1,104 @@
+package circuit;
+
+// Post-training квантование в int8 только для инференса.
+// Каждая строка матрицы слоя (веса одного входного нейрона) хранится как byte со своим масштабом:
+// w ~= q * scale[row], где scale = max|w| / 127. Масштаб строки умножается на вход один раз,
+// поэтому внутренний цикл - это только q * value. Смещения слоев не квантуются и хранятся во float.
+public class QuantizedNetwork {
+    private final int inputSize;
+    private final int[] layerSizes;
+    // Начала матриц слоев в weights: смещения хранятся отдельно, в biases
+    private final int[] offsets;
+    private final int[] rowOffsets;
+    private final byte[] weights;
+    private final float[] scales;
+    private final float[] biases;
+    private final int[] biasOffsets;
+    private final ThreadLocal<float[][]> outputs;
+    private final Activation[] activations;
+
+    public QuantizedNetwork(SimpleNeuralNetwork network) {
+        WeightStorage storage = network.getWeights();
+        this.inputSize = network.getInputSize();
+        this.layerSizes = network.getLayerSizes();
+        this.offsets = new int[layerSizes.length];
+        this.rowOffsets = new int[layerSizes.length];
+        this.biasOffsets = new int[layerSizes.length];
+        this.activations = new Activation[layerSizes.length];
+
+        int weightCount = 0;
+        int rowCount = 0;
+        int biasCount = 0;
+        for (int l = 0; l < layerSizes.length; l++) {
+            offsets[l] = weightCount;
+            rowOffsets[l] = rowCount;
+            biasOffsets[l] = biasCount;
+            activations[l] = network.getActivation(l);
+            weightCount += storage.rows(l) * storage.cols(l);
+            rowCount += storage.rows(l);
+            biasCount += layerSizes[l];
+        }
+
+        double[] data = storage.data();
+        this.weights = new byte[weightCount];
+        this.scales = new float[rowCount];
+        this.biases = new float[biasCount];
+        for (int l = 0; l < layerSizes.length; l++) {
+            int cols = storage.cols(l);
+            for (int k = 0; k < cols; k++) {
+                biases[biasOffsets[l] + k] = (float) storage.bias(l, k);
+            }
+            for (int j = 0, source = storage.offset(l), row = offsets[l]; j < storage.rows(l);
+                 j++, source += cols, row += cols) {
+                double max = 0;
+                for (int k = 0; k < cols; k++) {
+                    max = Math.max(max, Math.abs(data[source + k]));
+                }
+                double scale = max == 0 ? 1 : max / 127;
+                scales[rowOffsets[l] + j] = (float) scale;
+                for (int k = 0; k < cols; k++) {
+                    weights[row + k] = (byte) Math.round(data[source + k] / scale);
+                }
+            }
+        }
+
+        this.outputs = ThreadLocal.withInitial(() -> {
+            float[][] b = new float[layerSizes.length][];
+            for (int l = 0; l < layerSizes.length; l++) {
+                b[l] = new float[layerSizes[l]];
+            }
+            return b;
+        });
+    }
+
+    public float[] predict(float[] input) {
+        if (input.length != inputSize) {
+            throw new IllegalArgumentException("Input must have " + inputSize + " elements");
+        }
+        float[][] layerOutputs = outputs.get();
+        float[] currentInput = input;
+
+        for (int i = 0; i < layerSizes.length; i++) {
+            float[] output = layerOutputs[i];
+            int cols = layerSizes[i];
+            System.arraycopy(biases, biasOffsets[i], output, 0, cols);
+            for (int j = 0, row = offsets[i]; j < currentInput.length; j++, row += cols) {
+                float value = currentInput[j] * scales[rowOffsets[i] + j];
+                if (value == 0) {
+                    continue;
+                }
+                for (int k = 0; k < cols; k++) {
+                    output[k] += value * weights[row + k];
+                }
+            }
+            activations[i].apply(output, cols);
+            currentInput = output;
+        }
+
+        return layerOutputs[layerSizes.length - 1].clone();
+    }
+
+    public long sizeInBytes() {
+        return weights.length + (long) (scales.length + biases.length) * Float.BYTES;
+    }
+}
@@ -0,0 +1,402 @@
+package circuit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Регрессионные проверки быстрых путей против эталонов:
+//   - выбранный бэкенд Kernels против ScalarKernels (double и float, с хвостами не кратными ширине SIMD);
+//   - блочные MatrixKernels против тройных циклов;
+//   - SimpleNeuralNetwork (predict, predictBatch, predictBits, train, trainBits, trainBatch, trainBatchBits)
+//     против прямой реализации сигмоидной сети и SGD на обычных циклах;
+//   - ShardedNetwork на LocalShardTransport против SimpleNeuralNetwork с теми же весами.
+// Ошибка - max |actual - expected| / max(1, |expected|).
+// Золотые выходы: record сохраняет выходы детерминированного сценария обучения (зерно, train, trainBatch,
+// predict) в файл, verify пересчитывает их и сравнивает с допуском GOLDEN_TOLERANCE. Например, записать
+// на скалярном пути и проверить SIMD-путь или новую версию кода:
+//   java -Dsnn.kernels=scalar -cp TextAutoencoderV1/target/classes circuit.RegressionHarness record golden.bin
+//   java --add-modules jdk.incubator.vector -cp TextAutoencoderV1/target/classes circuit.RegressionHarness verify golden.bin
+// Код выхода 1, если какая-то проверка не прошла.
+public final class RegressionHarness {
+    private static final double DOUBLE_TOLERANCE = 1e-12;
+    private static final double FLOAT_TOLERANCE = 1e-5;
+    private static final double GOLDEN_TOLERANCE = 1e-9;
+    private static final int GOLDEN_MAGIC = 0x534E4E47;
+    private static final int GOLDEN_VERSION = 1;
+    private static final int[] LENGTHS = {1, 3, 8, 17, 64, 257};
+
+    private final Random random;
+    private boolean passed = true;
+
+    private RegressionHarness(long seed) {
+        this.random = new Random(seed);
+    }
+
+    private void checkKernels() {
+        Kernels fast = Kernels.get();
+        Kernels reference = new ScalarKernels();
+        for (int length : LENGTHS) {
+            double a = random.nextDouble() * 2 - 1;
+            double[] x = randomVector(length + 1, 1);
+            double[] y = randomVector(length + 2, 1);
+            double[] expected = y.clone();
+            double[] actual = y.clone();
+            reference.axpy(a, x, 1, expected, 2, length);
+            fast.axpy(a, x, 1, actual, 2, length);
+            check("axpy " + length, actual, expected, DOUBLE_TOLERANCE);
+            check("dot " + length, new double[]{fast.dot(x, 1, y, 2, length)},
+                    new double[]{reference.dot(x, 1, y, 2, length)}, DOUBLE_TOLERANCE);
+            double[] values = randomVector(length, 8);
+            expected = values.clone();
+            actual = values.clone();
+            reference.sigmoid(expected, length);
+            fast.sigmoid(actual, length);
+            check("sigmoid " + length, actual, expected, DOUBLE_TOLERANCE);
+
+            int rows = 5;
+            double[] matrix = randomVector(3 + rows * length, 1);
+            double[] vector = randomVector(rows, 1);
+            expected = new double[length];
+            actual = new double[length];
+            reference.multiply(vector, matrix, 3, rows, length, expected);
+            fast.multiply(vector, matrix, 3, rows, length, actual);
+            check("multiply 5x" + length, actual, expected, DOUBLE_TOLERANCE);
+            double[] delta = randomVector(length, 1);
+            expected = new double[rows];
+            actual = new double[rows];
+            reference.multiplyTransposed(delta, matrix, 3, rows, length, expected);
+            fast.multiplyTransposed(delta, matrix, 3, rows, length, actual);
+            check("multiplyTransposed 5x" + length, actual, expected, DOUBLE_TOLERANCE);
+            expected = matrix.clone();
+            actual = matrix.clone();
+            reference.addOuterProduct(expected, 3, vector, rows, delta, length, a);
+            fast.addOuterProduct(actual, 3, vector, rows, delta, length, a);
+            check("addOuterProduct 5x" + length, actual, expected, DOUBLE_TOLERANCE);
+
+            float af = (float) a;
+            float[] xf = toFloat(x);
+            float[] yf = toFloat(y);
+            float[] expectedFloat = yf.clone();
+            float[] actualFloat = yf.clone();
+            reference.axpy(af, xf, 1, expectedFloat, 2, length);
+            fast.axpy(af, xf, 1, actualFloat, 2, length);
+            check("float axpy " + length, toDouble(actualFloat), toDouble(expectedFloat), FLOAT_TOLERANCE);
+            check("float dot " + length, new double[]{fast.dot(xf, 1, yf, 2, length)},
+                    new double[]{reference.dot(xf, 1, yf, 2, length)}, FLOAT_TOLERANCE);
+            expectedFloat = toFloat(values);
+            actualFloat = expectedFloat.clone();
+            reference.sigmoid(expectedFloat, length);
+            fast.sigmoid(actualFloat, length);
+            check("float sigmoid " + length, toDouble(actualFloat), toDouble(expectedFloat), FLOAT_TOLERANCE);
+            expectedFloat = new float[length];
+            actualFloat = new float[length];
+            reference.multiply(toFloat(vector), toFloat(matrix), 3, rows, length, expectedFloat);
+            fast.multiply(toFloat(vector), toFloat(matrix), 3, rows, length, actualFloat);
+            check("float multiply 5x" + length, toDouble(actualFloat), toDouble(expectedFloat), FLOAT_TOLERANCE);
+        }
+    }
+
+    private void checkMatrixKernels() {
+        // Размеры пересекают границу блока MatrixKernels.BLOCK
+        int k = MatrixKernels.BLOCK + 6;
+        int n = 2 * MatrixKernels.BLOCK + 2;
+        for (int m : new int[]{1, 5}) {
+            double[] a = randomVector(m * k, 1);
+            double[] b = randomVector(4 + k * n, 1);
+            double[] expected = new double[m * n];
+            for (int i = 0; i < m; i++) {
+                for (int p = 0; p < k; p++) {
+                    for (int j = 0; j < n; j++) {
+                        expected[i * n + j] += a[i * k + p] * b[4 + p * n + j];
+                    }
+                }
+            }
+            double[] actual = new double[m * n];
+            MatrixKernels.multiply(a, m, k, b, 4, n, actual);
+            check("MatrixKernels.multiply " + m + "x" + k + "x" + n, actual, expected, DOUBLE_TOLERANCE);
+
+            double[] rowsN = randomVector(m * n, 1);
+            expected = new double[m * k];
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < k; j++) {
+                    for (int p = 0; p < n; p++) {
+                        expected[i * k + j] += rowsN[i * n + p] * b[4 + j * n + p];
+                    }
+                }
+            }
+            actual = new double[m * k];
+            MatrixKernels.multiplyTransposed(rowsN, m, n, b, 4, k, actual);
+            check("MatrixKernels.multiplyTransposed " + m + "x" + n + "x" + k, actual, expected, DOUBLE_TOLERANCE);
+
+            expected = b.clone();
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < k; j++) {
+                    for (int p = 0; p < n; p++) {
+                        expected[4 + j * n + p] += a[i * k + j] * rowsN[i * n + p];
+                    }
+                }
+            }
+            actual = b.clone();
+            MatrixKernels.accumulateTransposed(a, m, k, rowsN, n, actual, 4);
+            check("MatrixKernels.accumulateTransposed " + m + "x" + k + "x" + n, actual, expected, DOUBLE_TOLERANCE);
+        }
+    }
+
+    private void checkNetwork() {
+        int inputSize = 24;
+        int[] layerSizes = {16, 12, inputSize};
+        SimpleNeuralNetwork network = new SimpleNeuralNetwork(inputSize, layerSizes, new Random(random.nextLong()));
+        double[][] inputs = new double[6][inputSize];
+        byte[][] packed = new byte[inputs.length][inputSize / 8];
+        for (int s = 0; s < inputs.length; s++) {
+            for (int i = 0; i < inputSize; i++) {
+                if (random.nextBoolean()) {
+                    inputs[s][i] = 1;
+                    packed[s][i / 8] |= (byte) (0x80 >>> (i % 8));
+                }
+            }
+        }
+
+        WeightStorage reference = new WeightStorage(inputSize, layerSizes);
+        network.copyWeightsTo(reference.data());
+        double[][] batch = network.predictBatch(inputs);
+        for (int s = 0; s < inputs.length; s++) {
+            double[][] outputs = referenceForward(reference, inputs[s]);
+            double[] expected = outputs[layerSizes.length - 1];
+            check("predict row " + s, network.predict(inputs[s]), expected, DOUBLE_TOLERANCE);
+            check("predictBatch row " + s, batch[s], expected, DOUBLE_TOLERANCE);
+            check("predictBits row " + s, network.predictBits(packed[s]), expected, DOUBLE_TOLERANCE);
+        }
+
+        double learningRate = 0.5;
+        for (int s = 0; s < inputs.length; s++) {
+            network.train(inputs[s], inputs[s], learningRate);
+            referenceStep(reference, new double[][]{inputs[s]}, learningRate);
+        }
+        check("train " + inputs.length + " steps", network.getWeights().data(), reference.data(), DOUBLE_TOLERANCE);
+        for (int s = 0; s < inputs.length; s++) {
+            network.trainBits(packed[s], inputs[s], learningRate);
+            referenceStep(reference, new double[][]{inputs[s]}, learningRate);
+        }
+        check("trainBits " + inputs.length + " steps", network.getWeights().data(), reference.data(),
+                DOUBLE_TOLERANCE);
+        network.trainBatch(inputs, inputs, learningRate);
+        referenceStep(reference, inputs, learningRate);
+        check("trainBatch " + inputs.length, network.getWeights().data(), reference.data(), DOUBLE_TOLERANCE);
+        network.trainBatchBits(packed, learningRate);
+        referenceStep(reference, inputs, learningRate);
+        check("trainBatchBits " + inputs.length, network.getWeights().data(), reference.data(), DOUBLE_TOLERANCE);
+    }
+
+    // ShardedNetwork на LocalShardTransport против SimpleNeuralNetwork с теми же весами: слои делятся
+    // между шардами неровно (размеры не кратны числу шардов), вклады шардов в дельту суммируются в другом порядке
+    private void checkShardedNetwork() throws IOException {
+        int inputSize = 20;
+        int[] layerSizes = {13, 7, inputSize};
+        SimpleNeuralNetwork network = new SimpleNeuralNetwork(inputSize, layerSizes, new Random(random.nextLong()));
+        double[][] inputs = new double[6][];
+        for (int s = 0; s < inputs.length; s++) {
+            inputs[s] = randomVector(inputSize, 1);
+        }
+        try (ShardedNetwork sharded = new ShardedNetwork(inputSize, layerSizes, new LocalShardTransport(3),
+                random.nextLong())) {
+            sharded.copyWeightsFrom(network);
+            for (int s = 0; s < inputs.length; s++) {
+                check("sharded predict row " + s, sharded.predict(inputs[s]), network.predict(inputs[s]),
+                        DOUBLE_TOLERANCE);
+            }
+            for (int s = 0; s < inputs.length; s++) {
+                sharded.train(inputs[s], inputs[s], 0.5);
+                network.train(inputs[s], inputs[s], 0.5);
+            }
+            SimpleNeuralNetwork gathered = new SimpleNeuralNetwork(inputSize, layerSizes, new Random(0));
+            sharded.copyWeightsTo(gathered);
+            check("sharded train " + inputs.length + " steps", gathered.getWeights().data(),
+                    network.getWeights().data(), DOUBLE_TOLERANCE);
+        }
+    }
+
+    // Выходы всех слоев сигмоидной сети, циклы без ядер
+    private static double[][] referenceForward(WeightStorage weights, double[] input) {
+        double[][] outputs = new double[weights.layerCount()][];
+        double[] current = input;
+        for (int l = 0; l < weights.layerCount(); l++) {
+            double[] output = new double[weights.cols(l)];
+            for (int k = 0; k < output.length; k++) {
+                double sum = weights.bias(l, k);
+                for (int j = 0; j < weights.rows(l); j++) {
+                    sum += current[j] * weights.get(l, j, k);
+                }
+                output[k] = 1 / (1 + Math.exp(-sum));
+            }
+            outputs[l] = output;
+            current = output;
+        }
+        return outputs;
+    }
+
+    // Один шаг SGD по среднему градиенту автоэнкодера (цель - сам вход) на батче
+    private static void referenceStep(WeightStorage weights, double[][] inputs, double learningRate) {
+        int layerCount = weights.layerCount();
+        double[] step = new double[weights.size()];
+        for (double[] input : inputs) {
+            double[][] outputs = referenceForward(weights, input);
+            double[] delta = new double[weights.cols(layerCount - 1)];
+            for (int k = 0; k < delta.length; k++) {
+                double y = outputs[layerCount - 1][k];
+                delta[k] = (input[k] - y) * y * (1 - y);
+            }
+            for (int l = layerCount - 1; l >= 0; l--) {
+                double[] layerInput = l == 0 ? input : outputs[l - 1];
+                for (int j = 0; j < weights.rows(l); j++) {
+                    for (int k = 0; k < weights.cols(l); k++) {
+                        step[weights.offset(l) + j * weights.cols(l) + k] += layerInput[j] * delta[k];
+                    }
+                }
+                for (int k = 0; k < weights.cols(l); k++) {
+                    step[weights.biasOffset(l) + k] += delta[k];
+                }
+                if (l == 0) {
+                    break;
+                }
+                double[] previous = new double[weights.rows(l)];
+                for (int j = 0; j < previous.length; j++) {
+                    double sum = 0;
+                    for (int k = 0; k < weights.cols(l); k++) {
+                        sum += weights.get(l, j, k) * delta[k];
+                    }
+                    previous[j] = sum * layerInput[j] * (1 - layerInput[j]);
+                }
+                delta = previous;
+            }
+        }
+        double[] data = weights.data();
+        for (int i = 0; i < data.length; i++) {
+            data[i] += learningRate * step[i] / inputs.length;
+        }
+    }
+
+    // Детерминированный сценарий для золотых выходов: зависит только от seed
+    static double[] goldenOutputs(long seed) {
+        Random random = new Random(seed);
+        int inputSize = 64;
+        SimpleNeuralNetwork network = new SimpleNeuralNetwork(List.of(
+                new DenseLayer(inputSize, 48), new ActivationLayer(48, Activation.TANH), new DropoutLayer(48, 0.1),
+                new DenseLayer(48, inputSize), new ActivationLayer(inputSize, Activation.SIGMOID)),
+                new Random(random.nextLong()));
+        network.setOptimizer(Optimizer.adam());
+        double[][] inputs = new double[32][inputSize];
+        for (double[] input : inputs) {
+            for (int i = 0; i < inputSize; i++) {
+                input[i] = random.nextInt(2);
+            }
+        }
+        for (int epoch = 0; epoch < 5; epoch++) {
+            for (double[] input : inputs) {
+                network.train(input, input, 0.01);
+            }
+            for (int from = 0; from < inputs.length; from += 8) {
+                double[][] batch = Arrays.copyOfRange(inputs, from, from + 8);
+                network.trainBatch(batch, batch, 0.01);
+            }
+        }
+        double[][] outputs = network.predictBatch(inputs);
+        double[] result = new double[inputs.length * inputSize];
+        for (int s = 0; s < inputs.length; s++) {
+            System.arraycopy(outputs[s], 0, result, s * inputSize, inputSize);
+        }
+        return result;
+    }
+
+    static void recordGolden(Path path, long seed) throws IOException {
+        double[] outputs = goldenOutputs(seed);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(GOLDEN_MAGIC);
+            out.writeInt(GOLDEN_VERSION);
+            out.writeLong(seed);
+            out.writeInt(outputs.length);
+            for (double value : outputs) {
+                out.writeDouble(value);
+            }
+        }
+    }
+
+    private void verifyGolden(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != GOLDEN_MAGIC || in.readInt() != GOLDEN_VERSION) {
+                throw new IOException("Not a golden outputs file");
+            }
+            long seed = in.readLong();
+            double[] expected = new double[in.readInt()];
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = in.readDouble();
+            }
+            check("golden outputs (seed " + seed + ")", goldenOutputs(seed), expected, GOLDEN_TOLERANCE);
+        }
+    }
+
+    private void check(String name, double[] actual, double[] expected, double tolerance) {
+        double error = actual.length == expected.length ? 0 : Double.POSITIVE_INFINITY;
+        for (int i = 0; i < Math.min(actual.length, expected.length); i++) {
+            // Math.max сохраняет NaN, так что NaN в выходе тоже считается расхождением
+            error = Math.max(error, Math.abs(actual[i] - expected[i]) / Math.max(1, Math.abs(expected[i])));
+        }
+        boolean ok = error <= tolerance;
+        passed &= ok;
+        System.out.printf("%-50s %.3e %s%n", name, error, ok ? "OK" : "FAIL");
+    }
+
+    private double[] randomVector(int length, double scale) {
+        double[] vector = new double[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = (random.nextDouble() * 2 - 1) * scale;
+        }
+        return vector;
+    }
+
+    private static float[] toFloat(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+
+    private static double[] toDouble(float[] values) {
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    // java circuit.RegressionHarness [record|verify файл] [seed]
+    public static void main(String[] args) throws IOException {
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        if (args.length > 1 && args[0].equals("record")) {
+            recordGolden(Paths.get(args[1]), seed);
+            System.out.println("Golden outputs written to " + args[1] + " with kernels " + Kernels.get().name());
+            return;
+        }
+        System.out.println("Kernels: " + Kernels.get().name());
+        RegressionHarness harness = new RegressionHarness(seed);
+        harness.checkKernels();
+        harness.checkMatrixKernels();
+        harness.checkNetwork();
+        harness.checkShardedNetwork();
+        if (args.length > 1 && args[0].equals("verify")) {
+            harness.verifyGolden(Paths.get(args[1]));
+        }
+        if (!harness.passed) {
+            System.exit(1);
+        }
+    }
+}
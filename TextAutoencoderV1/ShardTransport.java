@@ -0,0 +1,22 @@
+package circuit;
+
+import java.io.IOException;
+
+// Связь ShardedNetwork с шардами. Запрос - код операции ShardWorker, номер слоя, число и отрезок массива;
+// ответ - массив известной вызывающему длины. send не ждет ответа, поэтому запросы ко всем шардам уходят
+// до первого receive и шарды считают параллельно. На каждый send приходится ровно один receive того же шарда,
+// по порядку. Отрезки позволяют слать доли дельты и принимать доли выхода без промежуточных массивов.
+public interface ShardTransport extends AutoCloseable {
+
+    int shardCount();
+
+    // Отправляет payload[offset, offset + length)
+    void send(int shard, int operation, int layer, double argument, double[] payload, int offset, int length)
+            throws IOException;
+
+    // Записывает ответ в target[offset, offset + length); ответ другой длины - ошибка
+    void receive(int shard, double[] target, int offset, int length) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
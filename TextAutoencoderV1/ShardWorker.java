@@ -0,0 +1,231 @@
+package circuit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+// Шард ShardedNetwork: хранит для каждого слоя свою долю выходных нейронов - столбцы [from, to) матрицы
+// как row-major [rows][to - from] и их смещения - и считает только эти выходы.
+// Запускается отдельным процессом (main, связь через SocketShardTransport) или внутри LocalShardTransport.
+// Буферы входов, выходов и дельт слоев выделяются в INIT, FORWARD и BACKWARD память не выделяют.
+//
+// Протокол (big-endian, DataOutputStream): запрос - int операция, int слой, double аргумент, int n, double[n];
+// ответ - int n, double[n], либо int -1 и строка ошибки writeUTF.
+public class ShardWorker {
+    // payload: индекс шарда, число шардов, inputSize, число слоев, размеры слоев, seed (биты long)
+    static final int INIT = 1;
+    // payload: веса и смещения доли слоя в раскладке шарда
+    static final int SET_WEIGHTS = 2;
+    static final int GET_WEIGHTS = 3;
+    // payload: полный вход слоя; ответ: выходы доли после сигмоиды
+    static final int FORWARD = 4;
+    // payload: дельта выходов доли (уже умноженная на производную), аргумент - скорость обучения;
+    // ответ: вклад доли в W * delta для предыдущего слоя (пустой для слоя 0). Затем веса доли обновляются.
+    static final int BACKWARD = 5;
+
+    private static final double[] EMPTY = new double[0];
+
+    private final Kernels kernels = Kernels.get();
+    private int[] rows;
+    private int[] cols;
+    private double[][] weights;
+    // Вход каждого слоя с последнего FORWARD, нужен для обновления весов
+    private double[][] inputs;
+    private double[][] outputs;
+    private double[][] deltas;
+    private double[][] partials;
+
+    // Доля столбцов шарда: [cols * shard / shardCount, cols * (shard + 1) / shardCount)
+    static int columnFrom(int cols, int shard, int shardCount) {
+        return (int) ((long) cols * shard / shardCount);
+    }
+
+    // Массив для payload следующего запроса: для FORWARD и BACKWARD - буфер слоя из INIT.
+    // Для запроса неверной длины выделяется новый массив, ошибку сообщит handle
+    double[] payloadBuffer(int operation, int layer, int length) {
+        if (weights != null && layer >= 0 && layer < weights.length) {
+            if (operation == FORWARD && length == rows[layer]) {
+                return inputs[layer];
+            }
+            if (operation == BACKWARD && length == cols[layer]) {
+                return deltas[layer];
+            }
+        }
+        return length == 0 ? EMPTY : new double[length];
+    }
+
+    // Ответ FORWARD и BACKWARD - буфер шарда, он действителен до следующего запроса
+    double[] handle(int operation, int layer, double argument, double[] payload) {
+        if (operation == INIT) {
+            initialize(payload);
+            return EMPTY;
+        }
+        if (weights == null) {
+            throw new IllegalStateException("Shard is not initialized");
+        }
+        if (layer < 0 || layer >= weights.length) {
+            throw new IllegalArgumentException("Invalid layer number");
+        }
+        double[] w = weights[layer];
+        int r = rows[layer];
+        int c = cols[layer];
+        switch (operation) {
+            case SET_WEIGHTS:
+                if (payload.length != w.length) {
+                    throw new IllegalArgumentException("Layer " + layer + " slice must have " + w.length + " values");
+                }
+                System.arraycopy(payload, 0, w, 0, w.length);
+                return EMPTY;
+            case GET_WEIGHTS:
+                return w.clone();
+            case FORWARD: {
+                if (payload.length != r) {
+                    throw new IllegalArgumentException("Layer " + layer + " input must have " + r + " elements");
+                }
+                if (payload != inputs[layer]) {
+                    System.arraycopy(payload, 0, inputs[layer], 0, r);
+                }
+                double[] output = outputs[layer];
+                kernels.multiply(inputs[layer], w, 0, r, c, output);
+                kernels.axpy(1, w, r * c, output, 0, c);
+                kernels.sigmoid(output, c);
+                return output;
+            }
+            case BACKWARD: {
+                if (payload.length != c) {
+                    throw new IllegalArgumentException("Layer " + layer + " delta must have " + c + " elements");
+                }
+                double[] partial = partials[layer];
+                if (layer > 0) {
+                    kernels.multiplyTransposed(payload, w, 0, r, c, partial);
+                }
+                kernels.addOuterProduct(w, 0, inputs[layer], r, payload, c, argument);
+                kernels.axpy(argument, payload, 0, w, r * c, c);
+                return partial;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    private void initialize(double[] config) {
+        int shard = (int) config[0];
+        int shardCount = (int) config[1];
+        int inputSize = (int) config[2];
+        int layerCount = (int) config[3];
+        long seed = Double.doubleToRawLongBits(config[4 + layerCount]);
+        rows = new int[layerCount];
+        cols = new int[layerCount];
+        weights = new double[layerCount][];
+        inputs = new double[layerCount][];
+        outputs = new double[layerCount][];
+        deltas = new double[layerCount][];
+        partials = new double[layerCount][];
+        Random random = new Random(seed + shard);
+        for (int l = 0; l < layerCount; l++) {
+            int size = (int) config[4 + l];
+            rows[l] = l == 0 ? inputSize : (int) config[3 + l];
+            cols[l] = columnFrom(size, shard + 1, shardCount) - columnFrom(size, shard, shardCount);
+            weights[l] = new double[rows[l] * cols[l] + cols[l]];
+            inputs[l] = new double[rows[l]];
+            outputs[l] = new double[cols[l]];
+            deltas[l] = new double[cols[l]];
+            // Слою 0 не нужен вклад в дельту предыдущего слоя
+            partials[l] = l == 0 ? EMPTY : new double[rows[l]];
+            for (int i = 0; i < rows[l] * cols[l]; i++) {
+                weights[l][i] = random.nextDouble() * 2 - 1;
+            }
+        }
+    }
+
+    static void writeRequest(DataOutputStream out, ArrayCodec codec, int operation, int layer, double argument,
+                             double[] payload, int offset, int length) throws IOException {
+        out.writeInt(operation);
+        out.writeInt(layer);
+        out.writeDouble(argument);
+        codec.write(out, payload, offset, length);
+        out.flush();
+    }
+
+    // Байты массивов протокола для одного соединения: буфер растет до самого длинного массива
+    // и дальше переиспользуется
+    static final class ArrayCodec {
+        private ByteBuffer bytes = ByteBuffer.allocate(0);
+        private DoubleBuffer doubles = bytes.asDoubleBuffer();
+
+        // int n, затем values[offset, offset + n)
+        void write(DataOutputStream out, double[] values, int offset, int length) throws IOException {
+            reserve(length);
+            doubles.clear();
+            doubles.put(values, offset, length);
+            out.writeInt(length);
+            out.write(bytes.array(), 0, length * Double.BYTES);
+        }
+
+        // Только значения: длину вызывающий уже прочитал
+        void read(DataInputStream in, double[] target, int offset, int length) throws IOException {
+            reserve(length);
+            in.readFully(bytes.array(), 0, length * Double.BYTES);
+            doubles.clear();
+            doubles.get(target, offset, length);
+        }
+
+        private void reserve(int length) {
+            if (bytes.capacity() < length * Double.BYTES) {
+                bytes = ByteBuffer.allocate(length * Double.BYTES);
+                doubles = bytes.asDoubleBuffer();
+            }
+        }
+    }
+
+    // java circuit.ShardWorker [port [адрес]]: принимает одно соединение координатора и обслуживает его до закрытия.
+    // Первой строкой stdout печатает порт - по нему SocketShardTransport.launch находит процесс.
+    // По умолчанию слушает только loopback. Протокол без аутентификации: кто подключится первым, тот и управляет
+    // шардом, поэтому другой адрес (например, 0.0.0.0 для шардов на других машинах) задается только явно
+    // и только в доверенной сети.
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        InetAddress address = args.length > 1 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+        ShardWorker worker = new ShardWorker();
+        ArrayCodec codec = new ArrayCodec();
+        try (ServerSocket server = new ServerSocket(port, 1, address)) {
+            System.out.println(server.getLocalPort());
+            System.out.flush();
+            try (Socket socket = server.accept()) {
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                while (true) {
+                    int operation;
+                    try {
+                        operation = in.readInt();
+                    } catch (EOFException e) {
+                        return;
+                    }
+                    int layer = in.readInt();
+                    double argument = in.readDouble();
+                    int length = in.readInt();
+                    double[] payload = worker.payloadBuffer(operation, layer, length);
+                    codec.read(in, payload, 0, length);
+                    try {
+                        double[] response = worker.handle(operation, layer, argument, payload);
+                        codec.write(out, response, 0, response.length);
+                    } catch (RuntimeException e) {
+                        out.writeInt(-1);
+                        out.writeUTF(String.valueOf(e.getMessage()));
+                    }
+                    out.flush();
+                }
+            }
+        }
+    }
+}
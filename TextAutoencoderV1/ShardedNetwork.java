@@ -0,0 +1,217 @@
+package circuit;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+// Модельно-параллельная версия SimpleNeuralNetwork с той же топологией по умолчанию: полносвязные слои
+// с сигмоидой и смещениями, SGD. Выходные нейроны каждого слоя делятся между шардами ShardTransport
+// (процессы ShardWorker или LocalShardTransport), у шарда хранятся только веса его доли,
+// так что ширина слоя растет с числом шардов.
+// Координатор держит только полные векторы выходов и дельт: на каждом слое он рассылает вход всем шардам
+// и собирает доли выхода; на обратном проходе рассылает доли дельты и суммирует вклады шардов
+// в дельту предыдущего слоя в фиксированном порядке. Методы синхронизированы: протокол с шардами один.
+// Доли выхода принимаются прямо в outputs, доли дельты отправляются из deltas: шаг обучения не выделяет память.
+public class ShardedNetwork implements AutoCloseable {
+    private static final double[] EMPTY = new double[0];
+
+    private final int inputSize;
+    private final int[] layerSizes;
+    private final ShardTransport transport;
+    private final int shardCount;
+    private final double[][] outputs;
+    private final double[][] deltas;
+    // Вклад одного шарда в дельту слоя l - 1, для l > 0
+    private final double[][] partials;
+    private final Kernels kernels = Kernels.get();
+
+    // Начальные веса генерирует каждый шард сам из seed и своего номера
+    public ShardedNetwork(int inputSize, int[] layerSizes, ShardTransport transport, long seed) {
+        if (layerSizes.length == 0) {
+            throw new IllegalArgumentException("Network must have at least one layer");
+        }
+        this.inputSize = inputSize;
+        this.layerSizes = layerSizes.clone();
+        this.transport = transport;
+        this.shardCount = transport.shardCount();
+        this.outputs = new double[layerSizes.length][];
+        this.deltas = new double[layerSizes.length][];
+        this.partials = new double[layerSizes.length][];
+        for (int l = 0; l < layerSizes.length; l++) {
+            if (layerSizes[l] < shardCount) {
+                throw new IllegalArgumentException("Layer " + l + " has fewer neurons than there are shards");
+            }
+            outputs[l] = new double[layerSizes[l]];
+            deltas[l] = new double[layerSizes[l]];
+            if (l > 0) {
+                partials[l] = new double[layerSizes[l - 1]];
+            }
+        }
+
+        for (int s = 0; s < shardCount; s++) {
+            double[] config = new double[5 + layerSizes.length];
+            config[0] = s;
+            config[1] = shardCount;
+            config[2] = inputSize;
+            config[3] = layerSizes.length;
+            for (int l = 0; l < layerSizes.length; l++) {
+                config[4 + l] = layerSizes[l];
+            }
+            config[4 + layerSizes.length] = Double.longBitsToDouble(seed);
+            send(s, ShardWorker.INIT, 0, 0, config, 0, config.length);
+        }
+        receiveAll();
+    }
+
+    public synchronized void train(double[] input, double[] targetOutput, double learningRate) {
+        int last = layerSizes.length - 1;
+        if (targetOutput.length != layerSizes[last]) {
+            throw new IllegalArgumentException("Target output must have " + layerSizes[last] + " elements");
+        }
+        forwardPass(input);
+
+        for (int j = 0; j < layerSizes[last]; j++) {
+            double output = outputs[last][j];
+            deltas[last][j] = (targetOutput[j] - output) * output * (1 - output);
+        }
+        for (int l = last; l >= 0; l--) {
+            for (int s = 0; s < shardCount; s++) {
+                int from = from(l, s);
+                send(s, ShardWorker.BACKWARD, l, learningRate, deltas[l], from, from(l, s + 1) - from);
+            }
+            if (l == 0) {
+                receiveAll();
+                break;
+            }
+            // Вклады шардов суммируются в порядке номеров, результат не зависит от скорости ответов
+            double[] delta = deltas[l - 1];
+            double[] partial = partials[l];
+            Arrays.fill(delta, 0);
+            for (int s = 0; s < shardCount; s++) {
+                receive(s, partial, 0, partial.length);
+                kernels.axpy(1, partial, 0, delta, 0, delta.length);
+            }
+            double[] previous = outputs[l - 1];
+            for (int j = 0; j < delta.length; j++) {
+                delta[j] *= previous[j] * (1 - previous[j]);
+            }
+        }
+    }
+
+    public synchronized double[] predict(double[] input) {
+        forwardPass(input);
+        return outputs[layerSizes.length - 1].clone();
+    }
+
+    private void forwardPass(double[] input) {
+        if (input.length != inputSize) {
+            throw new IllegalArgumentException("Input must have " + inputSize + " elements");
+        }
+        double[] currentInput = input;
+        for (int l = 0; l < layerSizes.length; l++) {
+            for (int s = 0; s < shardCount; s++) {
+                send(s, ShardWorker.FORWARD, l, 0, currentInput, 0, currentInput.length);
+            }
+            for (int s = 0; s < shardCount; s++) {
+                int from = from(l, s);
+                receive(s, outputs[l], from, from(l, s + 1) - from);
+            }
+            currentInput = outputs[l];
+        }
+    }
+
+    // Раздает веса обычной сети по шардам, например после загрузки чекпоинта
+    public synchronized void copyWeightsFrom(SimpleNeuralNetwork network) {
+        checkTopology(network);
+        WeightStorage storage = network.getWeights();
+        for (int l = 0; l < layerSizes.length; l++) {
+            int rows = storage.rows(l);
+            int cols = storage.cols(l);
+            for (int s = 0; s < shardCount; s++) {
+                int from = from(l, s);
+                int width = from(l, s + 1) - from;
+                double[] slice = new double[rows * width + width];
+                for (int j = 0; j < rows; j++) {
+                    System.arraycopy(storage.data(), storage.offset(l) + j * cols + from, slice, j * width, width);
+                }
+                System.arraycopy(storage.data(), storage.biasOffset(l) + from, slice, rows * width, width);
+                send(s, ShardWorker.SET_WEIGHTS, l, 0, slice, 0, slice.length);
+            }
+            receiveAll();
+        }
+    }
+
+    // Собирает веса шардов в обычную сеть, например чтобы сохранить их через saveWeightsToFile
+    public synchronized void copyWeightsTo(SimpleNeuralNetwork network) {
+        checkTopology(network);
+        WeightStorage storage = network.getWeights();
+        for (int l = 0; l < layerSizes.length; l++) {
+            int rows = storage.rows(l);
+            int cols = storage.cols(l);
+            for (int s = 0; s < shardCount; s++) {
+                send(s, ShardWorker.GET_WEIGHTS, l, 0, EMPTY, 0, 0);
+            }
+            for (int s = 0; s < shardCount; s++) {
+                int from = from(l, s);
+                int width = from(l, s + 1) - from;
+                double[] slice = new double[rows * width + width];
+                receive(s, slice, 0, slice.length);
+                for (int j = 0; j < rows; j++) {
+                    System.arraycopy(slice, j * width, storage.data(), storage.offset(l) + j * cols + from, width);
+                }
+                System.arraycopy(slice, rows * width, storage.data(), storage.biasOffset(l) + from, width);
+            }
+        }
+        network.markWeightsChanged();
+    }
+
+    private void checkTopology(SimpleNeuralNetwork network) {
+        if (network.getInputSize() != inputSize || !Arrays.equals(network.getLayerSizes(), layerSizes)) {
+            throw new IllegalArgumentException("Network topology does not match");
+        }
+    }
+
+    private int from(int layer, int shard) {
+        return ShardWorker.columnFrom(layerSizes[layer], shard, shardCount);
+    }
+
+    private void send(int shard, int operation, int layer, double argument, double[] payload, int offset,
+                      int length) {
+        try {
+            transport.send(shard, operation, layer, argument, payload, offset, length);
+        } catch (IOException e) {
+            throw new IllegalStateException("Shard " + shard + " is unavailable", e);
+        }
+    }
+
+    private void receive(int shard, double[] target, int offset, int length) {
+        try {
+            transport.receive(shard, target, offset, length);
+        } catch (IOException e) {
+            throw new IllegalStateException("Shard " + shard + " is unavailable", e);
+        }
+    }
+
+    // Ответы без данных: INIT, SET_WEIGHTS и BACKWARD слоя 0
+    private void receiveAll() {
+        for (int s = 0; s < shardCount; s++) {
+            receive(s, EMPTY, 0, 0);
+        }
+    }
+
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    public int[] getLayerSizes() {
+        return layerSizes.clone();
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        transport.close();
+    }
+}
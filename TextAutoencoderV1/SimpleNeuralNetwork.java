@@ -0,0 +1,754 @@
+package circuit;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Сеть из слоев Layer. Логический слой (номер layer в encode/decode/setActivation, элемент layerSizes) - это
+// DenseLayer вместе со следующими за ним ActivationLayer и DropoutLayer; слой без активации получает IDENTITY.
+public class SimpleNeuralNetwork {
+    private final int inputSize;
+    private final int[] layerSizes;
+    private final WeightStorage weights;
+    private final Layer[] layers;
+    // Начало параметров каждого слоя в WeightStorage
+    private final int[] parameterOffsets;
+    // Для логического слоя: индекс его последнего слоя Layer (выход логического слоя) и слоя активации
+    private final int[] blockEnds;
+    private final int[] activationLayers;
+    private final String weightsFile = "weights.bin";
+    // Старый текстовый формат: читается, если бинарного файла еще нет
+    private final String legacyWeightsFile = "weights.txt";
+    private final ThreadLocal<Workspace> workspaces;
+    private final Kernels kernels = Kernels.get();
+    // Увеличивается при каждом изменении весов, по нему кэши понимают, что их значения устарели
+    private final AtomicLong weightsVersion = new AtomicLong();
+    // Если задано, время прямого и обратного прохода и обновления пишется сюда
+    private volatile TrainingMetrics metrics;
+    private Optimizer optimizer = Optimizer.sgd();
+    private LearningRateSchedule schedule = LearningRateSchedule.constant();
+    // Файл, из которого загружены веса: из него setOptimizer восстанавливает состояние оптимизатора,
+    // если веса с тех пор не менялись
+    private Path restoredFrom;
+    private long restoredVersion;
+    // Зерно случайности обучения: вместе с номером шага оптимизатора задает маски dropout, см. Workspace.
+    // У сети из файла весов - -Dsnn.seed, если задано; им же инициализируются веса, когда файла нет
+    private long seed;
+
+    public SimpleNeuralNetwork(int inputSize, int[] layerSizes) {
+        this(inputSize, layerSizes, (Path) null);
+    }
+
+    // Сеть в памяти со случайными весами из random, без чтения и записи weights.bin
+    public SimpleNeuralNetwork(int inputSize, int[] layerSizes, Random random) {
+        this(denseLayers(inputSize, layerSizes), random);
+    }
+
+    // Если в checkpointDirectory есть чекпоинты AsyncCheckpointer, обучение продолжается с последнего
+    public SimpleNeuralNetwork(int inputSize, int[] layerSizes, Path checkpointDirectory) {
+        this(denseLayers(inputSize, layerSizes), checkpointDirectory);
+    }
+
+    // Произвольный список слоев, например dense, activation, dropout, dense, activation
+    public SimpleNeuralNetwork(List<Layer> layers, Random random) {
+        this(layers);
+        initializeWeights(random);
+        this.seed = random.nextLong();
+    }
+
+    public SimpleNeuralNetwork(List<Layer> layers, Path checkpointDirectory) {
+        this(layers);
+        this.seed = Long.getLong("snn.seed", new Random().nextLong());
+        if (checkpointDirectory != null && resumeFromLatest(checkpointDirectory)) {
+            return;
+        }
+        if (!loadWeightsFromFile()) {
+            initializeWeights(new Random(seed));
+            saveWeightsToFile();
+        }
+    }
+
+    private SimpleNeuralNetwork(List<Layer> layerList) {
+        List<Layer> engine = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        List<Integer> activationIndices = new ArrayList<>();
+        for (int i = 0; i < layerList.size(); ) {
+            Layer dense = layerList.get(i++);
+            if (!(dense instanceof DenseLayer)) {
+                throw new IllegalArgumentException("Expected a dense layer, found " + dense);
+            }
+            engine.add(dense);
+            if (i < layerList.size() && layerList.get(i) instanceof ActivationLayer) {
+                engine.add(layerList.get(i++));
+            } else {
+                engine.add(new ActivationLayer(dense.outputSize(), Activation.IDENTITY));
+            }
+            activationIndices.add(engine.size() - 1);
+            if (i < layerList.size() && layerList.get(i) instanceof DropoutLayer) {
+                engine.add(layerList.get(i++));
+            }
+            ends.add(engine.size() - 1);
+        }
+        if (engine.isEmpty()) {
+            throw new IllegalArgumentException("Network must have at least one layer");
+        }
+        for (int i = 1; i < engine.size(); i++) {
+            if (engine.get(i).inputSize() != engine.get(i - 1).outputSize()) {
+                throw new IllegalArgumentException("Layer " + engine.get(i) + " expects " + engine.get(i).inputSize()
+                        + " inputs, previous layer has " + engine.get(i - 1).outputSize() + " outputs");
+            }
+        }
+
+        this.layers = engine.toArray(new Layer[0]);
+        this.inputSize = layers[0].inputSize();
+        this.blockEnds = new int[ends.size()];
+        this.activationLayers = new int[ends.size()];
+        this.layerSizes = new int[ends.size()];
+        for (int b = 0; b < ends.size(); b++) {
+            blockEnds[b] = ends.get(b);
+            activationLayers[b] = activationIndices.get(b);
+            layerSizes[b] = layers[blockEnds[b]].outputSize();
+        }
+        this.weights = new WeightStorage(inputSize, layerSizes);
+        this.parameterOffsets = new int[layers.length];
+        for (int i = 1; i < layers.length; i++) {
+            parameterOffsets[i] = parameterOffsets[i - 1] + layers[i - 1].parameterCount();
+        }
+        this.workspaces = ThreadLocal.withInitial(this::newWorkspace);
+    }
+
+    // Прежняя топология: полносвязные слои с сигмоидой
+    private static List<Layer> denseLayers(int inputSize, int[] layerSizes) {
+        if (layerSizes.length == 0) {
+            throw new IllegalArgumentException("Network must have at least one layer");
+        }
+        List<Layer> layers = new ArrayList<>();
+        for (int l = 0; l < layerSizes.length; l++) {
+            layers.add(new DenseLayer(l == 0 ? inputSize : layerSizes[l - 1], layerSizes[l]));
+            layers.add(new ActivationLayer(layerSizes[l], Activation.SIGMOID));
+        }
+        return layers;
+    }
+
+    public void setActivation(int layer, Activation activation) {
+        if (layer < 0 || layer >= layerSizes.length) {
+            throw new IllegalArgumentException("Invalid layer number");
+        }
+        layers[activationLayers[layer]] = new ActivationLayer(layerSizes[layer], activation);
+    }
+
+    public Activation getActivation(int layer) {
+        return ((ActivationLayer) layers[activationLayers[layer]]).activation();
+    }
+
+    // Все слои сети, включая добавленные активации IDENTITY
+    public List<Layer> getLayers() {
+        return List.of(layers);
+    }
+
+    public void setOptimizer(Optimizer optimizer) {
+        optimizer.initialize(weights.size());
+        if (restoredFrom != null && weightsVersion.get() == restoredVersion) {
+            try {
+                ModelCheckpoint.readOptimizerState(restoredFrom, optimizer);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        this.optimizer = optimizer;
+    }
+
+    public Optimizer getOptimizer() {
+        return optimizer;
+    }
+
+    public void setLearningRateSchedule(LearningRateSchedule schedule) {
+        this.schedule = schedule;
+    }
+
+    // Начало одного обновления весов: номер шага оптимизатора и скорость по расписанию
+    double beginUpdate(double learningRate) {
+        return schedule.rate(learningRate, optimizer.nextStep());
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // Случайность прохода обучения по примерам начиная с firstSample зависит только от зерна и шага
+    private void seedWorkspace(Workspace workspace, int firstSample) {
+        workspace.randomSeed = Workspace.mix(seed + optimizer.getStep());
+        workspace.firstSample = firstSample;
+    }
+
+    public Workspace newWorkspace() {
+        return new Workspace(inputSize, layers);
+    }
+
+    public void train(double[] input, double[] targetOutput, double learningRate) {
+        train(input, targetOutput, learningRate, workspaces.get());
+    }
+
+    public void train(double[] input, double[] targetOutput, double learningRate, Workspace workspace) {
+        seedWorkspace(workspace, 0);
+        TrainingMetrics metrics = this.metrics;
+        if (metrics == null) {
+            forwardPass(input, true, workspace);
+            backwardPass(workspace, targetOutput);
+            updateWeights(input, workspace, beginUpdate(learningRate));
+            return;
+        }
+
+        long start = System.nanoTime();
+        forwardPass(input, true, workspace);
+        long forwardEnd = System.nanoTime();
+        backwardPass(workspace, targetOutput);
+        long backwardEnd = System.nanoTime();
+        updateWeights(input, workspace, beginUpdate(learningRate));
+        metrics.addPhase(TrainingMetrics.Phase.FORWARD, forwardEnd - start);
+        metrics.addPhase(TrainingMetrics.Phase.BACKWARD, backwardEnd - forwardEnd);
+        metrics.addPhase(TrainingMetrics.Phase.UPDATE, System.nanoTime() - backwardEnd);
+    }
+
+    void setMetrics(TrainingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public double[] predict(double[] input) {
+        double[] output = new double[layerSizes[layerSizes.length - 1]];
+        predict(input, output, workspaces.get());
+        return output;
+    }
+
+    // Вариант без выделения памяти: результат копируется в output
+    public void predict(double[] input, double[] output, Workspace workspace) {
+        forwardPass(input, false, workspace);
+        System.arraycopy(workspace.outputs[layers.length - 1], 0, output, 0, output.length);
+    }
+
+    // Бинарный вход, упакованный по 64 бита: бит i - это (bits[i / 64] >>> (i % 64)) & 1, как в BitSet.toLongArray.
+    // Первый слой считается как сумма строк весов при единичных битах, нулевые биты не дают операций.
+    public void trainBits(long[] bits, double[] targetOutput, double learningRate) {
+        Workspace workspace = workspaces.get();
+        unpackActiveInputs(bits, workspace);
+        trainActiveInputs(targetOutput, learningRate, workspace);
+    }
+
+    // Бинарный вход по байтам, старший бит первым - тот же порядок, что у stringToBitArray,
+    // поэтому сюда можно передавать байты UTF-8 текста без преобразования
+    public void trainBits(byte[] bits, double[] targetOutput, double learningRate) {
+        Workspace workspace = workspaces.get();
+        unpackActiveInputs(bits, workspace);
+        trainActiveInputs(targetOutput, learningRate, workspace);
+    }
+
+    public double[] predictBits(long[] bits) {
+        Workspace workspace = workspaces.get();
+        unpackActiveInputs(bits, workspace);
+        forwardPassActiveInputs(false, workspace);
+        return workspace.outputs[layers.length - 1].clone();
+    }
+
+    public double[] predictBits(byte[] bits) {
+        Workspace workspace = workspaces.get();
+        unpackActiveInputs(bits, workspace);
+        forwardPassActiveInputs(false, workspace);
+        return workspace.outputs[layers.length - 1].clone();
+    }
+
+    private void unpackActiveInputs(long[] bits, Workspace workspace) {
+        if (bits.length != (inputSize + 63) / 64) {
+            throw new IllegalArgumentException("Packed input must have " + (inputSize + 63) / 64 + " words");
+        }
+        int[] active = workspace.activeInputs;
+        int count = 0;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                int index = w * 64 + Long.numberOfTrailingZeros(word);
+                if (index >= inputSize) {
+                    throw new IllegalArgumentException("Bit " + index + " is outside of the input");
+                }
+                active[count++] = index;
+                word &= word - 1;
+            }
+        }
+        workspace.activeInputCount = count;
+    }
+
+    private void unpackActiveInputs(byte[] bits, Workspace workspace) {
+        if (bits.length != (inputSize + 7) / 8) {
+            throw new IllegalArgumentException("Packed input must have " + (inputSize + 7) / 8 + " bytes");
+        }
+        int[] active = workspace.activeInputs;
+        int count = 0;
+        for (int b = 0; b < bits.length; b++) {
+            int value = bits[b] & 0xFF;
+            while (value != 0) {
+                int index = b * 8 + Integer.numberOfLeadingZeros(value) - 24;
+                if (index >= inputSize) {
+                    throw new IllegalArgumentException("Bit " + index + " is outside of the input");
+                }
+                active[count++] = index;
+                value &= ~(0x80 >>> (index - b * 8));
+            }
+        }
+        workspace.activeInputCount = count;
+    }
+
+    private void trainActiveInputs(double[] targetOutput, double learningRate, Workspace workspace) {
+        seedWorkspace(workspace, 0);
+        forwardPassActiveInputs(true, workspace);
+        backwardPass(workspace, targetOutput);
+        double rate = beginUpdate(learningRate);
+
+        // Первый слой: строки нулевых входов получают нулевой градиент. Для SGD это нулевая поправка,
+        // и обновляются только строки единичных входов и смещения; оптимизаторам с моментами нужны все строки.
+        // Версия весов увеличивается в updateWeights
+        double[] data = weights.data();
+        double[] delta = workspace.deltas[0];
+        int cols = weights.cols(0);
+        int[] active = workspace.activeInputs;
+        if (optimizer.skipsZeroGradients()) {
+            for (int a = 0; a < workspace.activeInputCount; a++) {
+                optimizer.update(data, weights.offset(0) + active[a] * cols, 1, delta, 0, cols, rate);
+            }
+        } else {
+            // active отсортирован по возрастанию
+            for (int j = 0, a = 0; j < inputSize; j++) {
+                boolean set = a < workspace.activeInputCount && active[a] == j;
+                if (set) {
+                    a++;
+                }
+                optimizer.update(data, weights.offset(0) + j * cols, set ? 1 : 0, delta, 0, cols, rate);
+            }
+        }
+        optimizer.update(data, weights.biasOffset(0), 1, delta, 0, cols, rate);
+        updateWeights(null, 1, workspace, rate);
+    }
+
+    // Первый DenseLayer считается по единичным битам, остальные слои - обычным проходом
+    private void forwardPassActiveInputs(boolean training, Workspace workspace) {
+        double[] output = workspace.outputs[0];
+        sumActiveRows(output, 0, workspace);
+        forwardLayers(output, 1, layers.length - 1, 1, training, workspace.outputs, workspace);
+    }
+
+    // Выход первого DenseLayer для единичных битов workspace.activeInputs: сумма их строк весов и смещения
+    private void sumActiveRows(double[] output, int outputOffset, Workspace workspace) {
+        double[] data = weights.data();
+        int cols = weights.cols(0);
+        int[] active = workspace.activeInputs;
+        Arrays.fill(output, outputOffset, outputOffset + cols, 0);
+        for (int a = 0; a < workspace.activeInputCount; a++) {
+            kernels.axpy(1, data, weights.offset(0) + active[a] * cols, output, outputOffset, cols);
+        }
+        kernels.axpy(1, data, weights.biasOffset(0), output, outputOffset, cols);
+    }
+
+    // Обучение на мини-батче: градиенты по всем примерам усредняются и применяются одним обновлением
+    public void trainBatch(double[][] inputs, double[][] targetOutputs, double learningRate) {
+        if (inputs.length != targetOutputs.length) {
+            throw new IllegalArgumentException("Number of inputs must match number of target outputs");
+        }
+        if (inputs.length == 0) {
+            return;
+        }
+
+        Workspace workspace = workspaces.get();
+        double[] gradient = workspace.gradient(weights.size());
+        Arrays.fill(gradient, 0);
+        accumulateGradient(inputs, targetOutputs, 0, inputs.length, gradient, workspace);
+        applyGradient(gradient, 1.0 / inputs.length, beginUpdate(learningRate));
+    }
+
+    public double[][] predictBatch(double[][] inputs) {
+        int batchSize = inputs.length;
+        if (batchSize == 0) {
+            return new double[0][];
+        }
+        Workspace workspace = workspaces.get();
+        workspace.ensureBatchCapacity(batchSize);
+        packRows(inputs, 0, batchSize, inputSize, workspace.batchInput);
+        forwardLayers(workspace.batchInput, 0, layers.length - 1, batchSize, false, workspace.batchOutputs,
+                workspace);
+        double[] output = workspace.batchOutputs[layers.length - 1];
+
+        int outputSize = layerSizes[layerSizes.length - 1];
+        double[][] result = new double[batchSize][outputSize];
+        for (int s = 0; s < batchSize; s++) {
+            System.arraycopy(output, s * outputSize, result[s], 0, outputSize);
+        }
+        return result;
+    }
+
+    // Прибавляет к gradient сумму градиентов примеров [from, to). Раскладка gradient совпадает с WeightStorage.
+    void accumulateGradient(double[][] inputs, double[][] targetOutputs, int from, int to, double[] gradient) {
+        accumulateGradient(inputs, targetOutputs, from, to, gradient, workspaces.get());
+    }
+
+    void accumulateGradient(double[][] inputs, double[][] targetOutputs, int from, int to, double[] gradient,
+                            Workspace workspace) {
+        int batchSize = to - from;
+        int last = layers.length - 1;
+        int outputSize = layerSizes[layerSizes.length - 1];
+        workspace.ensureBatchCapacity(batchSize);
+        packRows(inputs, from, to, inputSize, workspace.batchInput);
+        packRows(targetOutputs, from, to, outputSize, workspace.batchTarget);
+        seedWorkspace(workspace, from);
+        long start = System.nanoTime();
+        forwardLayers(workspace.batchInput, 0, last, batchSize, true, workspace.batchOutputs, workspace);
+        long forwardEnd = System.nanoTime();
+
+        double[] delta = workspace.batchDeltas[last];
+        double[] output = workspace.batchOutputs[last];
+        double[] batchTarget = workspace.batchTarget;
+        for (int j = 0; j < batchSize * outputSize; j++) {
+            delta[j] = batchTarget[j] - output[j];
+        }
+        backwardLayers(workspace.batchInput, 0, batchSize, workspace.batchOutputs, workspace.batchDeltas, gradient,
+                workspace);
+
+        TrainingMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.addPhase(TrainingMetrics.Phase.FORWARD, forwardEnd - start);
+            metrics.addPhase(TrainingMetrics.Phase.BACKWARD, System.nanoTime() - forwardEnd);
+        }
+    }
+
+    // Обучение автоэнкодера на мини-батче упакованных окон (порядок бит как у trainBits(byte[])):
+    // цель каждого примера - его же биты. Шаг тот же, что у trainBatch на распакованных окнах
+    public void trainBatchBits(byte[][] bits, double learningRate) {
+        if (bits.length == 0) {
+            return;
+        }
+
+        Workspace workspace = workspaces.get();
+        double[] gradient = workspace.gradient(weights.size());
+        Arrays.fill(gradient, 0);
+        accumulateGradientBits(bits, 0, bits.length, gradient, workspace);
+        applyGradient(gradient, 1.0 / bits.length, beginUpdate(learningRate));
+    }
+
+    void accumulateGradientBits(byte[][] bits, int from, int to, double[] gradient) {
+        accumulateGradientBits(bits, from, to, gradient, workspaces.get());
+    }
+
+    // Как accumulateGradient для автоэнкодера, но без плотного входа: прямой проход первого DenseLayer -
+    // сумма строк единичных битов, а его градиент по весам - дельта, прибавленная к тем же строкам
+    void accumulateGradientBits(byte[][] bits, int from, int to, double[] gradient, Workspace workspace) {
+        int outputSize = layerSizes[layerSizes.length - 1];
+        if (outputSize != inputSize) {
+            throw new IllegalArgumentException("Packed batches need an autoencoder: output size must match input size");
+        }
+        int batchSize = to - from;
+        int last = layers.length - 1;
+        int cols = weights.cols(0);
+        workspace.ensureBatchCapacity(batchSize);
+        seedWorkspace(workspace, from);
+        long start = System.nanoTime();
+        double[] firstOutput = workspace.batchOutputs[0];
+        double[] batchTarget = workspace.batchTarget;
+        for (int s = 0; s < batchSize; s++) {
+            byte[] sample = bits[from + s];
+            unpackActiveInputs(sample, workspace);
+            sumActiveRows(firstOutput, s * cols, workspace);
+            for (int i = 0; i < outputSize; i++) {
+                batchTarget[s * outputSize + i] = (sample[i >>> 3] >>> (7 - (i & 7))) & 1;
+            }
+        }
+        forwardLayers(firstOutput, 1, last, batchSize, true, workspace.batchOutputs, workspace);
+        long forwardEnd = System.nanoTime();
+
+        double[] delta = workspace.batchDeltas[last];
+        double[] output = workspace.batchOutputs[last];
+        for (int j = 0; j < batchSize * outputSize; j++) {
+            delta[j] = batchTarget[j] - output[j];
+        }
+        backwardLayers(null, 1, batchSize, workspace.batchOutputs, workspace.batchDeltas, gradient, workspace);
+        double[] firstDelta = workspace.batchDeltas[0];
+        int[] active = workspace.activeInputs;
+        for (int s = 0; s < batchSize; s++) {
+            unpackActiveInputs(bits[from + s], workspace);
+            for (int a = 0; a < workspace.activeInputCount; a++) {
+                kernels.axpy(1, firstDelta, s * cols, gradient, weights.offset(0) + active[a] * cols, cols);
+            }
+            kernels.axpy(1, firstDelta, s * cols, gradient, weights.biasOffset(0), cols);
+        }
+
+        TrainingMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.addPhase(TrainingMetrics.Phase.FORWARD, forwardEnd - start);
+            metrics.addPhase(TrainingMetrics.Phase.BACKWARD, System.nanoTime() - forwardEnd);
+        }
+    }
+
+    // Ошибка 0.5 * sum (target - output)^2 по батчу на прямом проходе обучения - с теми же масками dropout,
+    // что и у accumulateGradient на этом шаге. Ее градиент по весам - это -gradient, см. GradientCheck
+    double trainingLoss(double[][] inputs, double[][] targetOutputs) {
+        int batchSize = inputs.length;
+        int last = layers.length - 1;
+        int outputSize = layerSizes[layerSizes.length - 1];
+        Workspace workspace = workspaces.get();
+        workspace.ensureBatchCapacity(batchSize);
+        packRows(inputs, 0, batchSize, inputSize, workspace.batchInput);
+        packRows(targetOutputs, 0, batchSize, outputSize, workspace.batchTarget);
+        seedWorkspace(workspace, 0);
+        forwardLayers(workspace.batchInput, 0, last, batchSize, true, workspace.batchOutputs, workspace);
+
+        double[] output = workspace.batchOutputs[last];
+        double loss = 0;
+        for (int j = 0; j < batchSize * outputSize; j++) {
+            double error = workspace.batchTarget[j] - output[j];
+            loss += error * error / 2;
+        }
+        return loss;
+    }
+
+    // Шаг оптимизатора по градиенту gradientScale * gradient; learningRate - уже из beginUpdate
+    void applyGradient(double[] gradient, double gradientScale, double learningRate) {
+        applyGradient(gradient, gradientScale, learningRate, 0, gradient.length);
+    }
+
+    void applyGradient(double[] gradient, double gradientScale, double learningRate, int from, int to) {
+        optimizer.update(weights.data(), from, gradientScale, gradient, from, to - from, learningRate);
+        markWeightsChanged();
+    }
+
+    public int parameterCount() {
+        return weights.size();
+    }
+
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    public int[] getLayerSizes() {
+        return layerSizes.clone();
+    }
+
+    WeightStorage getWeights() {
+        return weights;
+    }
+
+    void copyWeightsTo(double[] target) {
+        System.arraycopy(weights.data(), 0, target, 0, weights.size());
+    }
+
+    // Обратное к copyWeightsTo, например возврат к снимку InferenceModel.parameters(); оптимизатор не меняется
+    void copyWeightsFrom(double[] source) {
+        if (source.length != weights.size()) {
+            throw new IllegalArgumentException("Weights must have " + weights.size() + " elements");
+        }
+        System.arraycopy(source, 0, weights.data(), 0, weights.size());
+        markWeightsChanged();
+    }
+
+    private static void packRows(double[][] rows, int from, int to, int width, double[] packed) {
+        for (int s = from; s < to; s++) {
+            if (rows[s].length != width) {
+                throw new IllegalArgumentException("Row " + s + " must have " + width + " elements");
+            }
+            System.arraycopy(rows[s], 0, packed, (s - from) * width, width);
+        }
+    }
+
+    private void forwardPass(double[] input, boolean training, Workspace workspace) {
+        forwardLayers(input, 0, layers.length - 1, 1, training, workspace.outputs, workspace);
+    }
+
+    // Прямой проход по слоям Layer [first, last]; input - вход слоя first, выходы пишутся в outputs
+    private void forwardLayers(double[] input, int first, int last, int batchSize, boolean training,
+                               double[][] outputs, Workspace workspace) {
+        double[] currentInput = input;
+
+        for (int i = first; i <= last; i++) {
+            layers[i].forward(weights.data(), parameterOffsets[i], currentInput, outputs[i], batchSize, training,
+                    workspace, i);
+            currentInput = outputs[i];
+        }
+    }
+
+    // Обратный проход от deltas последнего слоя до слоя firstLayer; градиент входа сети не нужен,
+    // поэтому у первого слоя deltaIn = null. input - вход сети, нужен только при firstLayer = 0
+    private void backwardLayers(double[] input, int firstLayer, int batchSize, double[][] outputs, double[][] deltas,
+                                double[] gradient, Workspace workspace) {
+        for (int i = layers.length - 1; i >= firstLayer; i--) {
+            layers[i].backward(weights.data(), parameterOffsets[i], i == 0 ? input : outputs[i - 1], outputs[i],
+                    deltas[i], i == 0 ? null : deltas[i - 1], batchSize, gradient, workspace, i);
+        }
+    }
+
+    // Выход первого слоя (латентный вектор автоэнкодера)
+    public double[] encode(double[] input) {
+        return encode(input, 0);
+    }
+
+    // Выход слоя layer: прямой проход останавливается на нем, следующие слои не считаются
+    public double[] encode(double[] input, int layer) {
+        if (layer < 0 || layer >= layerSizes.length) {
+            throw new IllegalArgumentException("Invalid layer number");
+        }
+        if (input.length != inputSize) {
+            throw new IllegalArgumentException("Input must have " + inputSize + " elements");
+        }
+
+        Workspace workspace = workspaces.get();
+        forwardLayers(input, 0, blockEnds[layer], 1, false, workspace.outputs, workspace);
+        return workspace.outputs[blockEnds[layer]].clone();
+    }
+
+    public double[] decode(double[] latentVector) {
+        return decode(latentVector, 0);
+    }
+
+    // Выход сети по выходу слоя layer: проход начинается со следующего слоя
+    public double[] decode(double[] latentVector, int layer) {
+        if (layer < 0 || layer >= layerSizes.length - 1) {
+            throw new IllegalArgumentException("Invalid layer number");
+        }
+        if (latentVector.length != layerSizes[layer]) {
+            throw new IllegalArgumentException("Size of latent vector must match the size of layer " + layer);
+        }
+
+        Workspace workspace = workspaces.get();
+        forwardLayers(latentVector, blockEnds[layer] + 1, layers.length - 1, 1, false, workspace.outputs, workspace);
+        return workspace.outputs[layers.length - 1].clone();
+    }
+
+    public double[] predictFromLatentVector(double[] latentVector) {
+        // Проверяем, соответствует ли размер вектора размеру скрытого слоя
+        if (latentVector.length != layerSizes[0]) {
+            throw new IllegalArgumentException("Size of latent vector must match the size of the first hidden layer");
+        }
+        return decode(latentVector, 0);
+    }
+
+    long getWeightsVersion() {
+        return weightsVersion.get();
+    }
+
+    // Вызывается кодом, который меняет getWeights().data() в обход методов сети
+    void markWeightsChanged() {
+        weightsVersion.incrementAndGet();
+    }
+
+    // Градиенты слоев по одному примеру; вход сети обратному проходу не нужен
+    private void backwardPass(Workspace workspace, double[] targetOutput) {
+        double[] output = workspace.outputs[layers.length - 1];
+        double[] delta = workspace.deltas[layers.length - 1];
+        for (int j = 0; j < targetOutput.length; j++) {
+            delta[j] = targetOutput[j] - output[j];
+        }
+        backwardLayers(null, 0, 1, workspace.outputs, workspace.deltas, null, workspace);
+    }
+
+    private void updateWeights(double[] input, Workspace workspace, double learningRate) {
+        updateWeights(input, 0, workspace, learningRate);
+    }
+
+    // Обновление слоев Layer начиная с firstLayer; input - вход сети, нужен только при firstLayer = 0
+    private void updateWeights(double[] input, int firstLayer, Workspace workspace, double learningRate) {
+        for (int i = firstLayer; i < layers.length; i++) {
+            layers[i].update(weights.data(), parameterOffsets[i], i == 0 ? input : workspace.outputs[i - 1],
+                    workspace.deltas[i], optimizer, learningRate);
+        }
+        markWeightsChanged();
+    }
+
+    // Other utility methods (loadWeightsFromFile, saveWeightsToFile, initializeWeights, etc.) remain the
+    // false - файла весов нет. Существующий, но нечитаемый weights.bin - ошибка: иначе конструктор
+    // заменил бы обученные веса случайными и записал их поверх файла
+    boolean loadWeightsFromFile() {
+        File file = new File(weightsFile);
+        if (!file.exists()) {
+            return importTextWeights(new File(legacyWeightsFile));
+        }
+
+        restore(file.toPath());
+        return true;
+    }
+
+    // false - чекпоинтов нет. Поврежденный последний чекпоинт - ошибка, а не повод молча начать
+    // с weights.bin или случайных весов
+    public boolean resumeFromLatest(Path checkpointDirectory) {
+        Path latest;
+        try {
+            latest = AsyncCheckpointer.latest(checkpointDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list checkpoints in " + checkpointDirectory, e);
+        }
+        if (latest == null) {
+            return false;
+        }
+        restore(latest);
+        return true;
+    }
+
+    // Веса и, если есть, состояние текущего оптимизатора из бинарного чекпоинта
+    private void restore(Path path) {
+        try {
+            ModelCheckpoint.read(path, inputSize, layerSizes, weights.data());
+            ModelCheckpoint.readOptimizerState(path, optimizer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read checkpoint " + path, e);
+        } finally {
+            markWeightsChanged();
+        }
+        restoredFrom = path;
+        restoredVersion = weightsVersion.get();
+    }
+
+    boolean importTextWeights(File file) {
+        if (!file.exists()) {
+            return false;
+        }
+
+        // Смещений в текстовом формате нет
+        double[] data = weights.data();
+        Arrays.fill(data, 0);
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            for (int l = 0; l < layerSizes.length; l++) {
+                int index = weights.offset(l);
+                for (int i = 0; i < weights.rows(l); i++) {
+                    String[] line = reader.readLine().split(" ");
+                    for (int j = 0; j < layerSizes[l]; j++) {
+                        data[index++] = Double.parseDouble(line[j]);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            markWeightsChanged();
+        }
+        return true;
+    }
+
+    // ModelCheckpoint.write заменяет weights.bin атомарно, недописанный файл на его месте не остается
+    void saveWeightsToFile() {
+        try {
+            ModelCheckpoint.write(new File(weightsFile).toPath(), inputSize, layerSizes, weights.data(), optimizer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void initializeWeights(Random random) {
+        for (int i = 0; i < layers.length; i++) {
+            layers[i].initialize(weights.data(), parameterOffsets[i], random);
+        }
+        markWeightsChanged();
+    }
+ // Функция для получения выходов указанного слоя
+ public double[] getLayerOutputs(double[] input, int layerNumber) {
+     return encode(input, layerNumber);
+ }
+
+}
@@ -0,0 +1,135 @@
+package circuit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Шарды - отдельные процессы ShardWorker, по одному TCP-соединению на шард. Запросы ко всем шардам
+// отправляются до чтения ответов, поэтому процессы считают свои доли слоя одновременно.
+public class SocketShardTransport implements ShardTransport {
+    private final Socket[] sockets;
+    private final DataInputStream[] inputs;
+    private final DataOutputStream[] outputs;
+    private final ShardWorker.ArrayCodec[] codecs;
+    private final List<Process> processes = new ArrayList<>();
+
+    public SocketShardTransport(List<InetSocketAddress> workers) throws IOException {
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("At least one worker is required");
+        }
+        this.sockets = new Socket[workers.size()];
+        this.inputs = new DataInputStream[workers.size()];
+        this.outputs = new DataOutputStream[workers.size()];
+        this.codecs = new ShardWorker.ArrayCodec[workers.size()];
+        try {
+            for (int s = 0; s < workers.size(); s++) {
+                sockets[s] = new Socket();
+                sockets[s].setTcpNoDelay(true);
+                sockets[s].connect(workers.get(s));
+                inputs[s] = new DataInputStream(new BufferedInputStream(sockets[s].getInputStream()));
+                outputs[s] = new DataOutputStream(new BufferedOutputStream(sockets[s].getOutputStream()));
+                codecs[s] = new ShardWorker.ArrayCodec();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    // Запускает shardCount процессов ShardWorker на этой машине с тем же java, флагами JVM и classpath
+    public static SocketShardTransport launch(int shardCount) throws IOException {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+        List<Process> processes = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        try {
+            for (int s = 0; s < shardCount; s++) {
+                Process process = new ProcessBuilder(command)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                processes.add(process);
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+                String port = reader.readLine();
+                if (port == null) {
+                    throw new IOException("Shard worker " + s + " exited before reporting its port");
+                }
+                // ShardWorker по умолчанию слушает именно этот адрес
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port.trim())));
+            }
+            SocketShardTransport transport = new SocketShardTransport(addresses);
+            transport.processes.addAll(processes);
+            return transport;
+        } catch (IOException | RuntimeException e) {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public int shardCount() {
+        return sockets.length;
+    }
+
+    @Override
+    public void send(int shard, int operation, int layer, double argument, double[] payload, int offset, int length)
+            throws IOException {
+        ShardWorker.writeRequest(outputs[shard], codecs[shard], operation, layer, argument, payload, offset, length);
+    }
+
+    @Override
+    public void receive(int shard, double[] target, int offset, int length) throws IOException {
+        DataInputStream in = inputs[shard];
+        int responseLength = in.readInt();
+        if (responseLength < 0) {
+            throw new IOException("Shard " + shard + " failed: " + in.readUTF());
+        }
+        if (responseLength != length) {
+            // Ответ дочитывается, чтобы следующий остался на своем месте в потоке
+            in.skipNBytes((long) responseLength * Double.BYTES);
+            throw new IOException("Shard " + shard + " returned " + responseLength + " values, expected " + length);
+        }
+        codecs[shard].read(in, target, offset, length);
+    }
+
+    // Закрытие соединения завершает процесс шарда
+    @Override
+    public void close() throws IOException {
+        for (Socket socket : sockets) {
+            if (socket != null) {
+                socket.close();
+            }
+        }
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroy();
+            }
+        }
+    }
+}
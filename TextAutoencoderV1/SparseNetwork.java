@@ -0,0 +1,279 @@
+package circuit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Прореженная копия SimpleNeuralNetwork только для инференса. Матрица каждого слоя хранится в CSR
+// по строкам (входам): для входа j ненулевые веса - values[rowPointers[j] .. rowPointers[j + 1]),
+// их выходы - columns[...]. Прямой проход прибавляет строку к выходу только для ненулевых входов,
+// поэтому время и память пропорциональны числу ненулевых весов. Смещения хранятся плотно.
+//
+// Бинарный формат (little-endian): int magic 'SNNS', int version, int dtype, int inputSize, int layerCount,
+// int[layerCount] layerSizes, выравнивание до 8 байт; затем для каждого слоя: int nnz, int 0,
+// int[rows + 1] rowPointers, int[nnz] columns, выравнивание до 8 байт, double[nnz] values, double[cols] biases.
+public class SparseNetwork {
+    static final int MAGIC = 0x534E4E53;
+    static final int VERSION = 1;
+
+    private final int inputSize;
+    private final int[] layerSizes;
+    private final int[][] rowPointers;
+    private final int[][] columns;
+    private final double[][] values;
+    private final double[][] biases;
+    private final Activation[] activations;
+    private final ThreadLocal<double[][]> outputs;
+
+    public SparseNetwork(SimpleNeuralNetwork network) {
+        WeightStorage storage = network.getWeights();
+        this.inputSize = network.getInputSize();
+        this.layerSizes = network.getLayerSizes();
+        int layerCount = layerSizes.length;
+        this.rowPointers = new int[layerCount][];
+        this.columns = new int[layerCount][];
+        this.values = new double[layerCount][];
+        this.biases = new double[layerCount][];
+        this.activations = new Activation[layerCount];
+
+        double[] data = storage.data();
+        for (int l = 0; l < layerCount; l++) {
+            int rows = storage.rows(l);
+            int cols = storage.cols(l);
+            int offset = storage.offset(l);
+            int nonZeros = 0;
+            for (int i = offset; i < offset + rows * cols; i++) {
+                if (data[i] != 0) {
+                    nonZeros++;
+                }
+            }
+
+            int[] pointers = new int[rows + 1];
+            int[] layerColumns = new int[nonZeros];
+            double[] layerValues = new double[nonZeros];
+            int k = 0;
+            for (int j = 0, row = offset; j < rows; j++, row += cols) {
+                for (int c = 0; c < cols; c++) {
+                    if (data[row + c] != 0) {
+                        layerColumns[k] = c;
+                        layerValues[k++] = data[row + c];
+                    }
+                }
+                pointers[j + 1] = k;
+            }
+            rowPointers[l] = pointers;
+            columns[l] = layerColumns;
+            values[l] = layerValues;
+            biases[l] = Arrays.copyOfRange(data, storage.biasOffset(l), storage.biasOffset(l) + cols);
+            activations[l] = network.getActivation(l);
+        }
+        this.outputs = newOutputs(layerSizes);
+    }
+
+    private SparseNetwork(int inputSize, int[] layerSizes, int[][] rowPointers, int[][] columns, double[][] values,
+                          double[][] biases, Activation[] activations) {
+        this.inputSize = inputSize;
+        this.layerSizes = layerSizes;
+        this.rowPointers = rowPointers;
+        this.columns = columns;
+        this.values = values;
+        this.biases = biases;
+        this.activations = activations;
+        this.outputs = newOutputs(layerSizes);
+    }
+
+    private static ThreadLocal<double[][]> newOutputs(int[] layerSizes) {
+        return ThreadLocal.withInitial(() -> {
+            double[][] b = new double[layerSizes.length][];
+            for (int l = 0; l < layerSizes.length; l++) {
+                b[l] = new double[layerSizes[l]];
+            }
+            return b;
+        });
+    }
+
+    public double[] predict(double[] input) {
+        if (input.length != inputSize) {
+            throw new IllegalArgumentException("Input must have " + inputSize + " elements");
+        }
+        double[][] layerOutputs = outputs.get();
+        double[] currentInput = input;
+
+        for (int i = 0; i < layerSizes.length; i++) {
+            double[] output = layerOutputs[i];
+            int[] pointers = rowPointers[i];
+            int[] layerColumns = columns[i];
+            double[] layerValues = values[i];
+            System.arraycopy(biases[i], 0, output, 0, output.length);
+            for (int j = 0; j < currentInput.length; j++) {
+                double value = currentInput[j];
+                if (value == 0) {
+                    continue;
+                }
+                for (int k = pointers[j]; k < pointers[j + 1]; k++) {
+                    output[layerColumns[k]] += value * layerValues[k];
+                }
+            }
+            activations[i].apply(output, output.length);
+            currentInput = output;
+        }
+
+        return layerOutputs[layerSizes.length - 1].clone();
+    }
+
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    public int[] getLayerSizes() {
+        return layerSizes.clone();
+    }
+
+    public int nonZeroCount(int layer) {
+        return values[layer].length;
+    }
+
+    // Доля нулевых весов слоя
+    public double sparsity(int layer) {
+        int rows = rowPointers[layer].length - 1;
+        return 1 - (double) values[layer].length / ((long) rows * layerSizes[layer]);
+    }
+
+    public long sizeInBytes() {
+        long size = 0;
+        for (int l = 0; l < layerSizes.length; l++) {
+            size += (long) rowPointers[l].length * Integer.BYTES
+                    + (long) values[l].length * (Integer.BYTES + Double.BYTES)
+                    + (long) biases[l].length * Double.BYTES;
+        }
+        return size;
+    }
+
+    public void write(Path path) throws IOException {
+        long size = ModelCheckpoint.headerSize(layerSizes.length);
+        for (int l = 0; l < layerSizes.length; l++) {
+            size += layerSize(rowPointers[l].length - 1, layerSizes[l], values[l].length);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Sparse network is too large for a single buffer");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(ModelCheckpoint.DTYPE_FLOAT64).putInt(inputSize)
+                .putInt(layerSizes.length);
+        for (int layerSize : layerSizes) {
+            buffer.putInt(layerSize);
+        }
+        buffer.position(ModelCheckpoint.headerSize(layerSizes.length));
+        for (int l = 0; l < layerSizes.length; l++) {
+            buffer.putInt(values[l].length).putInt(0);
+            buffer.asIntBuffer().put(rowPointers[l]).put(columns[l]);
+            buffer.position(align(buffer.position() + (rowPointers[l].length + columns[l].length) * Integer.BYTES));
+            buffer.asDoubleBuffer().put(values[l]).put(biases[l]);
+            buffer.position(buffer.position() + (values[l].length + biases[l].length) * Double.BYTES);
+        }
+        buffer.position(0);
+        // Как и чекпоинты весов: через временный файл, чтобы сбой не оставил на месте path обрезанную модель
+        ModelCheckpoint.writeAtomically(path, channel -> ModelCheckpoint.writeFully(channel, buffer));
+    }
+
+    // Активации в файле не хранятся: по умолчанию сигмоида на всех слоях, как у SimpleNeuralNetwork
+    public static SparseNetwork read(Path path) throws IOException {
+        return read(path, null);
+    }
+
+    public static SparseNetwork read(Path path, Activation[] activations) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.limit() < 5 * Integer.BYTES || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a sparse weights file");
+            }
+            if (buffer.getInt(4) != VERSION || buffer.getInt(8) != ModelCheckpoint.DTYPE_FLOAT64) {
+                throw new IOException("Unsupported sparse weights version or dtype");
+            }
+            int inputSize = buffer.getInt(12);
+            int layerCount = buffer.getInt(16);
+            if (layerCount < 1 || buffer.limit() < ModelCheckpoint.headerSize(layerCount)) {
+                throw new IOException("Corrupted sparse weights header");
+            }
+            int[] layerSizes = new int[layerCount];
+            for (int l = 0; l < layerCount; l++) {
+                layerSizes[l] = buffer.getInt(20 + l * Integer.BYTES);
+            }
+            if (activations == null) {
+                activations = new Activation[layerCount];
+                Arrays.fill(activations, Activation.SIGMOID);
+            } else if (activations.length != layerCount) {
+                throw new IllegalArgumentException("Expected " + layerCount + " activations");
+            }
+
+            int[][] rowPointers = new int[layerCount][];
+            int[][] columns = new int[layerCount][];
+            double[][] values = new double[layerCount][];
+            double[][] biases = new double[layerCount][];
+            int position = ModelCheckpoint.headerSize(layerCount);
+            for (int l = 0; l < layerCount; l++) {
+                int rows = l == 0 ? inputSize : layerSizes[l - 1];
+                int cols = layerSizes[l];
+                if (buffer.limit() < position + 2 * Integer.BYTES) {
+                    throw new IOException("Sparse weights file is truncated");
+                }
+                int nonZeros = buffer.getInt(position);
+                if (nonZeros < 0 || (long) nonZeros > (long) rows * cols
+                        || buffer.limit() < position + layerSize(rows, cols, nonZeros)) {
+                    throw new IOException("Sparse weights file is truncated");
+                }
+                rowPointers[l] = new int[rows + 1];
+                columns[l] = new int[nonZeros];
+                values[l] = new double[nonZeros];
+                biases[l] = new double[cols];
+                buffer.position(position + 2 * Integer.BYTES);
+                buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(rowPointers[l]).get(columns[l]);
+                buffer.position(align(position + 2 * Integer.BYTES + (rows + 1 + nonZeros) * Integer.BYTES));
+                buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values[l]).get(biases[l]);
+                position += (int) layerSize(rows, cols, nonZeros);
+                validate(rowPointers[l], columns[l], cols);
+            }
+            if (position != buffer.limit()) {
+                throw new IOException("Sparse weights size does not match its header");
+            }
+            return new SparseNetwork(inputSize, layerSizes, rowPointers, columns, values, biases, activations);
+        }
+    }
+
+    // Индексы из файла проверяются заранее, чтобы predict не выходил за границы массивов
+    private static void validate(int[] rowPointers, int[] columns, int cols) throws IOException {
+        if (rowPointers[0] != 0 || rowPointers[rowPointers.length - 1] != columns.length) {
+            throw new IOException("Corrupted sparse row pointers");
+        }
+        for (int j = 1; j < rowPointers.length; j++) {
+            if (rowPointers[j] < rowPointers[j - 1]) {
+                throw new IOException("Corrupted sparse row pointers");
+            }
+        }
+        for (int column : columns) {
+            if (column < 0 || column >= cols) {
+                throw new IOException("Corrupted sparse column index");
+            }
+        }
+    }
+
+    private static long layerSize(int rows, int cols, int nonZeros) {
+        return align(2 * Integer.BYTES + (long) (rows + 1 + nonZeros) * Integer.BYTES)
+                + (long) (nonZeros + cols) * Double.BYTES;
+    }
+
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+}
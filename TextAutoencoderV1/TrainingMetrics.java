@@ -0,0 +1,116 @@
+package circuit;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+// Метрики обучения. Счетчики копятся между вызовами report и потокобезопасны,
+// так что в них пишут и рабочие потоки ParallelTrainer. report собирает значения за интервал
+// и раздает их всем подключенным MetricsSink.
+// Время фаз FORWARD и BACKWARD суммируется по всем потокам, UPDATE и IO - время вызывающего потока.
+public class TrainingMetrics {
+
+    public enum Phase {
+        FORWARD,
+        BACKWARD,
+        UPDATE,
+        IO
+    }
+
+    private final SimpleNeuralNetwork network;
+    private final List<MetricsSink> sinks = new CopyOnWriteArrayList<>();
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final DoubleAdder gradientNorms = new DoubleAdder();
+    private final LongAdder gradientNormCount = new LongAdder();
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private long lastReportNanos;
+    private long lastAllocatedBytes;
+
+    public TrainingMetrics(SimpleNeuralNetwork network) {
+        this.network = network;
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+        this.lastReportNanos = System.nanoTime();
+        this.lastAllocatedBytes = allocatedBytes();
+    }
+
+    public TrainingMetrics addSink(MetricsSink sink) {
+        sinks.add(sink);
+        return this;
+    }
+
+    public void addPhase(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    public void addSteps(long stepCount, long sampleCount) {
+        steps.add(stepCount);
+        samples.add(sampleCount);
+    }
+
+    // Норма усредненного по батчу градиента одного шага
+    public void addGradientNorm(double norm) {
+        gradientNorms.add(norm);
+        gradientNormCount.increment();
+    }
+
+    public void report(long step) {
+        report(step, Double.NaN);
+    }
+
+    public synchronized void report(long step, double testError) {
+        long now = System.nanoTime();
+        double seconds = (now - lastReportNanos) / 1e9;
+        long allocated = allocatedBytes();
+        long stepCount = steps.sumThenReset();
+        long normCount = gradientNormCount.sumThenReset();
+        double normSum = gradientNorms.sumThenReset();
+
+        Map<String, Double> values = new LinkedHashMap<>();
+        values.put("samples_per_s", seconds > 0 ? samples.sumThenReset() / seconds : Double.NaN);
+        for (Phase phase : Phase.values()) {
+            String name = phase.name().toLowerCase(Locale.ROOT) + "_ms";
+            values.put(name, phaseNanos[phase.ordinal()].sumThenReset() / 1e6);
+        }
+        // Потоки, завершившиеся за интервал, уносят свой счетчик, поэтому разность может быть отрицательной
+        values.put("alloc_bytes_per_step",
+                stepCount > 0 ? Math.max(0, allocated - lastAllocatedBytes) / (double) stepCount : Double.NaN);
+        values.put("gradient_norm", normCount > 0 ? normSum / normCount : Double.NaN);
+        values.put("weight_norm", weightNorm());
+        values.put("test_error", testError);
+
+        lastReportNanos = now;
+        lastAllocatedBytes = allocated;
+        for (MetricsSink sink : sinks) {
+            sink.record(step, values);
+        }
+    }
+
+    private double weightNorm() {
+        double sum = 0;
+        for (double w : network.getWeights().data()) {
+            sum += w * w;
+        }
+        return Math.sqrt(sum);
+    }
+
+    // Все выделения памяти живыми потоками JVM, как gc.alloc.rate
+    private long allocatedBytes() {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,91 @@
+package circuit;
+
+// Плоское хранилище весов: все слои лежат в одном непрерывном массиве double[],
+// каждый слой - row-major матрица [размер предыдущего слоя][размер слоя], сразу за ней смещения слоя.
+public class WeightStorage implements ParameterStorage {
+    private final int[] rows;
+    private final int[] cols;
+    private final int[] offsets;
+    private final double[] data;
+
+    public WeightStorage(int inputSize, int[] layerSizes) {
+        this.rows = new int[layerSizes.length];
+        this.cols = new int[layerSizes.length];
+        this.offsets = new int[layerSizes.length];
+
+        int size = 0;
+        for (int l = 0; l < layerSizes.length; l++) {
+            rows[l] = l == 0 ? inputSize : layerSizes[l - 1];
+            cols[l] = layerSizes[l];
+            offsets[l] = size;
+            size += rows[l] * cols[l] + cols[l];
+        }
+        this.data = new double[size];
+    }
+
+    // Размер хранилища для топологии: матрицы и смещения всех слоев
+    public static int parameterCount(int inputSize, int[] layerSizes) {
+        int count = 0;
+        for (int l = 0; l < layerSizes.length; l++) {
+            count += (l == 0 ? inputSize : layerSizes[l - 1]) * layerSizes[l] + layerSizes[l];
+        }
+        return count;
+    }
+
+    @Override
+    public int layerCount() {
+        return offsets.length;
+    }
+
+    @Override
+    public int rows(int layer) {
+        return rows[layer];
+    }
+
+    @Override
+    public int cols(int layer) {
+        return cols[layer];
+    }
+
+    public int offset(int layer) {
+        return offsets[layer];
+    }
+
+    // Начало вектора смещений слоя (cols элементов)
+    public int biasOffset(int layer) {
+        return offsets[layer] + rows[layer] * cols[layer];
+    }
+
+    // Число параметров слоя вместе со смещениями
+    public int layerSize(int layer) {
+        return rows[layer] * cols[layer] + cols[layer];
+    }
+
+    public int size() {
+        return data.length;
+    }
+
+    public double[] data() {
+        return data;
+    }
+
+    @Override
+    public double get(int layer, int row, int col) {
+        return data[offsets[layer] + row * cols[layer] + col];
+    }
+
+    @Override
+    public void set(int layer, int row, int col, double value) {
+        data[offsets[layer] + row * cols[layer] + col] = value;
+    }
+
+    @Override
+    public double bias(int layer, int col) {
+        return data[biasOffset(layer) + col];
+    }
+
+    @Override
+    public void copyTo(double[] target) {
+        System.arraycopy(data, 0, target, 0, data.length);
+    }
+}
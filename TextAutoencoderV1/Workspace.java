@@ -0,0 +1,90 @@
+package circuit;
+
+// Заранее выделенные буферы прямого и обратного прохода SimpleNeuralNetwork, по одному на каждый слой Layer.
+// Экземпляр не потокобезопасен: у каждого потока должен быть свой.
+public class Workspace {
+    final double[][] outputs;
+    final double[][] deltas;
+    // Индексы единичных битов упакованного входа (trainBits/predictBits)
+    final int[] activeInputs;
+    int activeInputCount;
+    // Случайность слоев при обучении (маски dropout) зависит только от randomSeed, номера примера и слоя,
+    // но не от потока и разбиения батча: randomSeed задает SimpleNeuralNetwork на каждый шаг обучения,
+    // firstSample - номер первой строки батча среди всех примеров шага
+    long randomSeed;
+    int firstSample;
+    private long randomState;
+
+    // Буферы мини-батча растут по мере необходимости и дальше переиспользуются
+    int batchCapacity;
+    double[] batchInput;
+    double[] batchTarget;
+    double[][] batchOutputs;
+    double[][] batchDeltas;
+    double[] gradient;
+
+    private final int inputSize;
+    private final int[] layerSizes;
+    // Служебные буферы слоев, сохраняются между прямым и обратным проходом
+    private final double[][] scratch;
+
+    Workspace(int inputSize, Layer[] layers) {
+        this.inputSize = inputSize;
+        this.layerSizes = new int[layers.length];
+        this.outputs = new double[layers.length][];
+        this.deltas = new double[layers.length][];
+        this.scratch = new double[layers.length][];
+        this.activeInputs = new int[inputSize];
+        for (int i = 0; i < layers.length; i++) {
+            layerSizes[i] = layers[i].outputSize();
+            outputs[i] = new double[layerSizes[i]];
+            deltas[i] = new double[layerSizes[i]];
+        }
+    }
+
+    void ensureBatchCapacity(int batchSize) {
+        if (batchSize <= batchCapacity) {
+            return;
+        }
+        batchCapacity = batchSize;
+        batchInput = new double[batchSize * inputSize];
+        batchTarget = new double[batchSize * layerSizes[layerSizes.length - 1]];
+        batchOutputs = new double[layerSizes.length][];
+        batchDeltas = new double[layerSizes.length][];
+        for (int i = 0; i < layerSizes.length; i++) {
+            batchOutputs[i] = new double[batchSize * layerSizes[i]];
+            batchDeltas[i] = new double[batchSize * layerSizes[i]];
+        }
+    }
+
+    double[] gradient(int parameterCount) {
+        if (gradient == null) {
+            gradient = new double[parameterCount];
+        }
+        return gradient;
+    }
+
+    // Начинает поток случайных чисел строки sample текущего батча для слоя layer
+    void startRandomStream(int sample, int layer) {
+        randomState = mix(randomSeed + mix(((long) (firstSample + sample) << 16) + layer));
+    }
+
+    // Равномерно на [0, 1): SplitMix64 от состояния потока
+    double nextRandom() {
+        randomState += 0x9E3779B97F4A7C15L;
+        return (mix(randomState) >>> 11) * 0x1.0p-53;
+    }
+
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    double[] scratch(int layer, int size) {
+        if (scratch[layer] == null || scratch[layer].length < size) {
+            scratch[layer] = new double[size];
+        }
+        return scratch[layer];
+    }
+}
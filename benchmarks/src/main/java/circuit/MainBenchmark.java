@@ -0,0 +1,46 @@
+package circuit;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// XOR из README через фасад Main: 2 -> 4 -> 4 -> 1
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class MainBenchmark {
+    private static final double[][] INPUTS = {{0, 0}, {0, 1}, {1, 0}, {1, 1}};
+    private static final double[][] TARGETS = {{0}, {1}, {1}, {0}};
+
+    private Main network;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        network = new Main(2, 4, 1, new Random(42));
+    }
+
+    @Benchmark
+    public void train() {
+        int i = index++ & 3;
+        network.train(INPUTS[i], TARGETS[i], 0.1);
+    }
+
+    @Benchmark
+    public double[] predict() {
+        return network.predict(INPUTS[index++ & 3]);
+    }
+}
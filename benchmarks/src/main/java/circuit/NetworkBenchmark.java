@@ -0,0 +1,91 @@
+package circuit;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Горячие пути сети: train, predict и getLayerOutputs по одному примеру, trainBatch на 64 примерах
+// и trainBatchBits на тех же примерах в упакованном виде (у батчей ops/s - примеры в секунду).
+// Автоэнкодер учится восстанавливать случайные битовые векторы, как окна текста в Autoencoder.
+// Память на операцию - gc.alloc.rate.norm с -prof gc.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class NetworkBenchmark {
+    private static final int SAMPLES = 64;
+
+    // вход-скрытый-выход
+    @Param({"256-200-256", "1024-800-1024"})
+    public String topology;
+
+    private SimpleNeuralNetwork network;
+    private double[][] samples;
+    private byte[][] packedSamples;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        String[] sizes = topology.split("-");
+        int inputSize = Integer.parseInt(sizes[0]);
+        Random random = new Random(42);
+        network = new SimpleNeuralNetwork(inputSize,
+                new int[]{Integer.parseInt(sizes[1]), Integer.parseInt(sizes[2])}, random);
+        samples = new double[SAMPLES][inputSize];
+        packedSamples = new byte[SAMPLES][inputSize / 8];
+        for (int s = 0; s < SAMPLES; s++) {
+            for (int i = 0; i < inputSize; i++) {
+                if (random.nextBoolean()) {
+                    samples[s][i] = 1;
+                    packedSamples[s][i / 8] |= (byte) (0x80 >>> (i % 8));
+                }
+            }
+        }
+    }
+
+    private double[] nextSample() {
+        return samples[index++ & (SAMPLES - 1)];
+    }
+
+    @Benchmark
+    public void train() {
+        double[] sample = nextSample();
+        network.train(sample, sample, 0.01);
+    }
+
+    @Benchmark
+    public double[] predict() {
+        return network.predict(nextSample());
+    }
+
+    @Benchmark
+    public double[] getLayerOutputs() {
+        return network.getLayerOutputs(nextSample(), 0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void trainBatch() {
+        network.trainBatch(samples, samples, 0.01);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void trainBatchBits() {
+        network.trainBatchBits(packedSamples, 0.01);
+    }
+}
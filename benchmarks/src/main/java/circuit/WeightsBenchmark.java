@@ -0,0 +1,81 @@
+package circuit;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Сохранение и загрузка весов автоэнкодера 256-200-256: старый weights.txt и бинарный чекпоинт.
+// Файлы пишутся во временную директорию, weights.bin в рабочей директории не трогается.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class WeightsBenchmark {
+    private SimpleNeuralNetwork network;
+    private Path directory;
+    private File textFile;
+    private Path binaryFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        network = new SimpleNeuralNetwork(256, new int[]{200, 256}, new Random(42));
+        directory = Files.createTempDirectory("snn-bench");
+        textFile = directory.resolve("weights.txt").toFile();
+        binaryFile = directory.resolve("weights.bin");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(textFile.toPath());
+        Files.deleteIfExists(binaryFile);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void textRoundTrip() throws IOException {
+        writeTextWeights(network, textFile);
+        network.importTextWeights(textFile);
+    }
+
+    @Benchmark
+    public void binaryRoundTrip() throws IOException {
+        ModelCheckpoint.write(binaryFile, 256, network.getLayerSizes(), network.getWeights().data());
+        ModelCheckpoint.read(binaryFile, 256, network.getLayerSizes(), network.getWeights().data());
+    }
+
+    // Старый текстовый формат weights.txt: по строке на каждую строку матрицы слоя
+    private static void writeTextWeights(SimpleNeuralNetwork network, File file) throws IOException {
+        WeightStorage weights = network.getWeights();
+        double[] data = weights.data();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (int l = 0; l < weights.layerCount(); l++) {
+                int index = weights.offset(l);
+                for (int i = 0; i < weights.rows(l); i++) {
+                    for (int j = 0; j < weights.cols(l); j++) {
+                        writer.write(data[index++] + " ");
+                    }
+                    writer.newLine();
+                }
+            }
+        }
+    }
+}